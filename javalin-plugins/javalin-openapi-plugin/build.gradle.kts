@@ -7,5 +7,9 @@ plugins {
 dependencies {
     api(project(":openapi-specification"))
 
+    val jacksonVersion = "2.18.1"
+    compileOnly("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:$jacksonVersion")
+    testImplementation("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:$jacksonVersion")
+
     kaptTest(project(":openapi-annotation-processor"))
 }
@@ -0,0 +1,35 @@
+package io.javalin.openapi.plugin
+
+/** Utilities for proactive content negotiation based on Accept and Accept-Encoding headers */
+internal object ContentNegotiation {
+
+    /** Parses header with quality values into a map of lower-cased values and their weights */
+    fun parseQualityValues(header: String): Map<String, Double> =
+        header
+            .split(',')
+            .filter { it.isNotBlank() }
+            .associate { value ->
+                val name = value.substringBefore(';').trim().lowercase()
+                val quality = value
+                    .substringAfter(';', "")
+                    .split(';')
+                    .map { it.trim() }
+                    .firstOrNull { it.startsWith("q=") }
+                    ?.removePrefix("q=")
+                    ?.toDoubleOrNull()
+                    ?: 1.0
+                name to quality
+            }
+
+    /** Finds weight of given content coding, including the `*` wildcard */
+    fun findEncodingQuality(qualities: Map<String, Double>, encoding: String): Double =
+        qualities[encoding] ?: qualities["*"] ?: 0.0
+
+    /** Finds weight of given media type, including wildcard media ranges */
+    fun findMediaTypeQuality(qualities: Map<String, Double>, mediaType: String): Double =
+        qualities[mediaType]
+            ?: qualities[mediaType.substringBefore('/') + "/*"]
+            ?: qualities["*/*"]
+            ?: 0.0
+
+}
@@ -0,0 +1,41 @@
+package io.javalin.openapi.plugin
+
+import io.javalin.openapi.OpenApiDiff
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.storage.LruCache
+
+/** Bounded LRU cache of JSON Patches between versions of documentation prepared to be served as-is */
+internal class DocumentationDiffCache(
+    maxSize: Int,
+    private val prettyOutputEnabled: Boolean,
+    metrics: DocumentationMetrics,
+    private val preparer: (patch: ByteArray) -> PreparedDocumentation
+) {
+
+    private companion object {
+        const val CACHE_NAME = "documentation-diff"
+    }
+
+    private data class Key(
+        /** ETags of both documents, so reloaded documentation never reuses stale patches */
+        val sourceEtag: String,
+        val targetEtag: String
+    )
+
+    private val diff = OpenApiDiff()
+    private val cache = LruCache<Key, PreparedDocumentation>(CACHE_NAME, maxSize.toLong(), metrics)
+
+    /**
+     * Returns patch that transforms [source] into [target]
+     *
+     * @param precomputed supplies patch generated by annotation processor, used instead of computing it if available
+     */
+    fun getOrCreate(source: PreparedDocumentation, target: PreparedDocumentation, precomputed: () -> ByteArray? = { null }): PreparedDocumentation =
+        cache.getOrCreate(Key(source.json.identity.etag, target.json.identity.etag)) {
+            val patch = precomputed()
+                ?: diff.diff(source.json.identity.content.toByteArray(), target.json.identity.content.toByteArray(), prettyOutputEnabled)
+
+            preparer(patch)
+        }
+
+}
@@ -0,0 +1,64 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
+import java.io.ByteArrayOutputStream
+
+/** Formats of OpenApi documentation that can be prepared next to the JSON one, binary formats are meant for machine consumers */
+internal enum class DocumentationFormat(
+    /** Value of `format` query parameter */
+    val formatName: String,
+    val contentType: String,
+    /** Media types accepted in Accept header for this format */
+    val mediaTypes: List<String>
+) {
+    JSON("json", "application/json", listOf("application/json")),
+    YAML("yaml", "application/yaml", listOf("application/yaml", "application/x-yaml", "text/yaml")),
+    SMILE("smile", "application/x-jackson-smile", listOf("application/x-jackson-smile", "application/smile")),
+    CBOR("cbor", "application/cbor", listOf("application/cbor"));
+
+    companion object {
+
+        private val jsonFactory = JsonFactory()
+        private val smileFactory = SmileFactory()
+        private val cborFactory = CBORFactory()
+
+        fun findByName(formatName: String): DocumentationFormat? =
+            values().firstOrNull { it.formatName.equals(formatName, ignoreCase = true) }
+
+        /** Renders prepared JSON documentation in given format by transcoding its tokens, without building a tree */
+        fun render(json: ByteArray, format: DocumentationFormat): ByteArray =
+            when (format) {
+                JSON -> json
+                // holder is loaded only when YAML is rendered, so YAML dataformat is required only if its output is enabled
+                YAML -> transcode(json, YamlFactoryHolder.factory)
+                SMILE -> transcode(json, smileFactory)
+                CBOR -> transcode(json, cborFactory)
+            }
+
+        private fun transcode(json: ByteArray, targetFactory: JsonFactory): ByteArray {
+            val output = ByteArrayOutputStream(json.size)
+
+            jsonFactory.createParser(json).use { parser ->
+                targetFactory.createGenerator(output).use { generator ->
+                    parser.nextToken()
+                    generator.copyCurrentStructure(parser)
+                }
+            }
+
+            return output.toByteArray()
+        }
+
+    }
+
+}
+
+/**
+ * Factory of YAML dataformat, an optional dependency, is kept out of [DocumentationFormat], because the verifier would load its class
+ * to check the arguments of `transcode` and fail even if YAML output is disabled. Smile and CBOR are dependencies of openapi-specification.
+ */
+private object YamlFactoryHolder {
+    val factory: JsonFactory = YAMLFactory()
+}
@@ -0,0 +1,140 @@
+package io.javalin.openapi.plugin
+
+import io.javalin.openapi.OpenApiLoader
+import io.javalin.util.JavalinLogger
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicReference
+
+/** State of OpenApi documentation preparation */
+enum class DocumentationReadiness {
+    /** Documentation is going to be prepared on the first request */
+    LAZY,
+    /** Documentation is being prepared in background */
+    PREPARING,
+    /** All versions are prepared and served from memory */
+    READY,
+    /** Background preparation failed, documentation is going to be prepared again on the next request */
+    FAILED
+}
+
+internal class DocumentationProvider(
+    private val loader: OpenApiLoader,
+    private val preparer: (version: String, rawDocs: ByteArray) -> PreparedDocumentation,
+    /** Called for versions removed from the index */
+    private val evicted: (version: String) -> Unit = {},
+    /** Versions described only at runtime, without documentation generated at compile time */
+    private val runtimeVersions: () -> Set<String> = { emptySet() }
+) {
+
+    private companion object {
+        const val DEFAULT_VERSION = "default"
+        val EMPTY_DOCUMENTATION = "{}".toByteArray()
+    }
+
+    @Volatile
+    var readiness: DocumentationReadiness = DocumentationReadiness.LAZY
+        private set
+
+    /** Cause of the last failed background preparation, cleared when documentation is prepared */
+    @Volatile
+    var failure: Throwable? = null
+        private set
+
+    /** Snapshot of prepared documentation, replaced as a whole, so requests in progress keep reading the previous one */
+    private val prepared = AtomicReference<Map<String, PreparedDocumentation>?>()
+
+    private val lazyDocumentation = lazy {
+        loadVersions()
+            .associateWith { prepare(it) }
+            .also {
+                prepared.compareAndSet(null, it)
+                failure = null
+                readiness = DocumentationReadiness.READY
+            }
+    }
+
+    private val rawDocumentation = ConcurrentHashMap<String, PreparedDocumentation>()
+
+    /** Returns prepared documentation, prepares it in the calling thread if it's not available yet */
+    fun getDocumentation(): Map<String, PreparedDocumentation> =
+        prepared.get() ?: lazyDocumentation.value
+
+    /** Returns prepared documentation or null if it's still being prepared */
+    fun getDocumentationIfReady(): Map<String, PreparedDocumentation>? =
+        prepared.get()
+
+    fun hasVersion(version: String): Boolean =
+        version in (prepared.get()?.keys ?: loadVersions())
+
+    /** Checks if given version is in the published snapshot, unlike [hasVersion] it never reads the index */
+    fun isPrepared(version: String): Boolean =
+        prepared.get()?.containsKey(version) == true
+
+    /** Returns documentation exactly as generated by annotation processor */
+    fun getRawDocumentation(version: String): PreparedDocumentation? =
+        rawDocumentation[version] ?: loader.loadVersionBytes(version)?.let { rawDocs -> rawDocumentation.computeIfAbsent(version) { PreparedDocumentation(rawDocs) } }
+
+    /** Prepares all versions in parallel using bounded pool of daemon threads */
+    fun prepareEagerly(parallelism: Int) {
+        readiness = DocumentationReadiness.PREPARING
+
+        val executor = Executors.newFixedThreadPool(parallelism.coerceAtLeast(1)) { runnable ->
+            Thread(runnable, "javalin-openapi-preparation").also { it.isDaemon = true }
+        }
+
+        val preparations = loadVersions().map { version ->
+            CompletableFuture
+                .supplyAsync({ version to prepare(version) }, executor)
+                .whenComplete { _, error -> error?.let { JavalinLogger.error("Cannot prepare OpenApi documentation of version '$version'", it.cause ?: it) } }
+        }
+
+        executor.shutdown()
+
+        CompletableFuture.allOf(*preparations.toTypedArray()).whenComplete { _, error ->
+            if (error != null) {
+                // allOf wraps the first failure in CompletionException
+                failure = error.cause ?: error
+                readiness = DocumentationReadiness.FAILED
+            } else {
+                prepared.compareAndSet(null, preparations.associate { it.join() })
+                rawDocumentation.clear()
+                failure = null
+                readiness = DocumentationReadiness.READY
+            }
+        }
+    }
+
+    /** Prepares again given version and publishes it in a new snapshot */
+    fun reload(version: String) {
+        if (prepared.get() == null || version !in loadVersions()) {
+            return // documentation is going to be prepared from the current sources anyway
+        }
+
+        val documentation = prepare(version)
+        prepared.updateAndGet { current -> current?.plus(version to documentation) }
+    }
+
+    /** Publishes documentation of the version prepared outside of the provider in a new snapshot */
+    fun publish(version: String, documentation: PreparedDocumentation) {
+        prepared.updateAndGet { current -> current?.plus(version to documentation) }
+    }
+
+    /** Synchronizes prepared versions with the current index, prepares only the new ones */
+    fun reloadVersions() {
+        val current = prepared.get() ?: return
+        val versions = loadVersions()
+        val added = (versions - current.keys).associateWith { prepare(it) }
+
+        prepared.updateAndGet { snapshot -> snapshot?.filterKeys { it in versions }?.plus(added) }
+        (current.keys - versions).forEach(evicted)
+    }
+
+    private fun loadVersions(): Set<String> =
+        (loader.loadVersions() + runtimeVersions()).ifEmpty { setOf(DEFAULT_VERSION) }
+
+    private fun prepare(version: String): PreparedDocumentation =
+        preparer(version, loader.loadVersionBytes(version) ?: EMPTY_DOCUMENTATION)
+
+}
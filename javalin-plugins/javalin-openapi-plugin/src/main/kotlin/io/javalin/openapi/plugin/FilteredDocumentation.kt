@@ -0,0 +1,261 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+import com.fasterxml.jackson.databind.node.ObjectNode
+import io.javalin.http.Context
+import io.javalin.http.HandlerType
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.storage.LruCache
+import io.javalin.router.InternalRouter
+import io.javalin.security.RouteRole
+
+/** Statistics of cache with filtered documentation */
+data class DocumentationCacheStatistics(
+    val hits: Long,
+    val misses: Long,
+    val size: Int
+)
+
+/** Selects operations of the documentation by tags, path prefix and roles of the requesting user */
+internal data class DocumentationFilter(
+    val tags: Set<String>,
+    val pathPrefix: String?,
+    /** Roles of the requesting user, or null if documentation is not filtered by roles */
+    val roles: Set<RouteRole>? = null
+) {
+
+    companion object {
+        fun from(context: Context, roleResolver: DocumentationRoleResolver?): DocumentationFilter? {
+            val tags = context.queryParam("tags")
+                ?.split(',')
+                ?.map { it.trim() }
+                ?.filter { it.isNotEmpty() }
+                ?.toSet()
+                ?: emptySet()
+            val pathPrefix = context.queryParam("pathPrefix")?.takeIf { it.isNotEmpty() }
+            val roles = roleResolver?.resolve(context)
+
+            return when {
+                tags.isEmpty() && pathPrefix == null && roles == null -> null
+                else -> DocumentationFilter(tags, pathPrefix, roles)
+            }
+        }
+    }
+
+    /** @param operationRoles roles of operations, required only if documentation is filtered by roles */
+    fun matches(operation: DocumentationReferenceGraph.Operation, operationRoles: OperationRoles?): Boolean =
+        (pathPrefix == null || operation.path.startsWith(pathPrefix))
+            && (tags.isEmpty() || operation.tags.any { it in tags })
+            && (roles == null || operationRoles!!.get(operation).let { it.isEmpty() || it.any { role -> role in roles } })
+
+}
+
+/** Roles of Javalin routes that handle operations of a single version of documentation, resolved for all of them at once */
+internal class OperationRoles private constructor(private val roles: Map<DocumentationReferenceGraph.Operation, Set<RouteRole>>) {
+
+    companion object {
+        fun resolve(referenceGraph: DocumentationReferenceGraph, internalRouter: InternalRouter?): OperationRoles =
+            OperationRoles(referenceGraph.operations.associateWith { findRoles(it, internalRouter) })
+
+        private fun findRoles(operation: DocumentationReferenceGraph.Operation, internalRouter: InternalRouter?): Set<RouteRole> {
+            val method = runCatching { HandlerType.valueOf(operation.method.uppercase()) }.getOrNull()
+                ?: return emptySet()
+
+            return internalRouter
+                ?.findHttpHandlerEntries(method, operation.path)
+                ?.findFirst()
+                ?.orElse(null)
+                ?.endpoint
+                ?.roles
+                ?.toSet()
+                ?: emptySet()
+        }
+    }
+
+    fun get(operation: DocumentationReferenceGraph.Operation): Set<RouteRole> =
+        roles[operation] ?: emptySet()
+
+}
+
+/** Graph of references between operations and components of a single version of documentation */
+internal class DocumentationReferenceGraph(private val document: ObjectNode) {
+
+    class Operation(
+        val path: String,
+        val method: String,
+        val tags: Set<String>,
+        /** Components referenced directly by this operation or its path item */
+        val references: Set<String>
+    )
+
+    companion object {
+
+        private const val COMPONENTS_REFERENCE_PREFIX = "#/components/"
+        private const val SECURITY_SCHEMES = "securitySchemes"
+        /** Fields of path items that describe operations */
+        val OPERATION_METHODS = setOf("get", "put", "post", "delete", "options", "head", "patch", "trace")
+        private val jsonMapper = ObjectMapper()
+
+        fun parse(json: ByteArray): DocumentationReferenceGraph =
+            DocumentationReferenceGraph(jsonMapper.readTree(json) as ObjectNode)
+
+        private fun collectReferences(node: JsonNode, references: MutableSet<String> = mutableSetOf()): MutableSet<String> {
+            when {
+                node.isObject -> node.fields().forEach { (name, value) ->
+                    if (name == "\$ref" && value.isTextual && value.asText().startsWith(COMPONENTS_REFERENCE_PREFIX)) {
+                        references.add(value.asText())
+                    } else {
+                        collectReferences(value, references)
+                    }
+                }
+                node.isArray -> node.forEach { collectReferences(it, references) }
+            }
+            return references
+        }
+
+    }
+
+    val operations: List<Operation> = document.path("paths").fields().asSequence()
+        .flatMap { (path, pathItem) ->
+            val pathItemReferences = pathItem.fields().asSequence()
+                .filter { (name, _) -> name !in OPERATION_METHODS }
+                .fold(mutableSetOf<String>()) { references, (_, value) -> collectReferences(value, references) }
+
+            pathItem.fields().asSequence()
+                .filter { (method, _) -> method in OPERATION_METHODS }
+                .map { (method, operation) ->
+                    Operation(
+                        path = path,
+                        method = method,
+                        tags = operation.path("tags").map { it.asText() }.toSet(),
+                        references = collectReferences(operation, pathItemReferences.toMutableSet())
+                    )
+                }
+                .toList()
+        }
+        .toList()
+
+    /** Components referenced by each component, keyed by reference such as `#/components/schemas/User` */
+    private val componentReferences: Map<String, Set<String>> = document.path("components").fields().asSequence()
+        .filter { (type, _) -> type != SECURITY_SCHEMES }
+        .flatMap { (type, components) -> components.fields().asSequence().map { (name, component) -> "$COMPONENTS_REFERENCE_PREFIX$type/$name" to collectReferences(component) } }
+        .toMap()
+
+    /** Creates document with the selected operations and the transitive closure of components they reference */
+    fun createSubDocument(predicate: (Operation) -> Boolean): ObjectNode {
+        val selectedOperations = operations.filter(predicate)
+        val requiredComponents = findClosure(selectedOperations.flatMapTo(mutableSetOf()) { it.references })
+        val subDocument = JsonNodeFactory.instance.objectNode()
+
+        document.fields().forEach { (name, value) ->
+            when (name) {
+                "paths" -> subDocument.set<JsonNode>(name, createPaths(selectedOperations))
+                "components" -> subDocument.set<JsonNode>(name, createComponents(value, requiredComponents))
+                else -> subDocument.set<JsonNode>(name, value)
+            }
+        }
+
+        return subDocument
+    }
+
+    private fun findClosure(references: Set<String>): Set<String> {
+        val closure = mutableSetOf<String>()
+        val queue = ArrayDeque(references)
+
+        while (queue.isNotEmpty()) {
+            val reference = queue.removeFirst()
+
+            if (closure.add(reference)) {
+                componentReferences[reference]?.let { queue.addAll(it) }
+            }
+        }
+
+        return closure
+    }
+
+    private fun createPaths(selectedOperations: List<Operation>): ObjectNode {
+        val paths = JsonNodeFactory.instance.objectNode()
+
+        selectedOperations.groupBy { it.path }.forEach { (path, pathOperations) ->
+            val methods = pathOperations.map { it.method }.toSet()
+            val pathItem = paths.putObject(path)
+
+            document.path("paths").path(path).fields().forEach { (name, value) ->
+                if (name !in OPERATION_METHODS || name in methods) {
+                    pathItem.set<JsonNode>(name, value)
+                }
+            }
+        }
+
+        return paths
+    }
+
+    private fun createComponents(components: JsonNode, requiredComponents: Set<String>): ObjectNode {
+        val filteredComponents = JsonNodeFactory.instance.objectNode()
+
+        components.fields().forEach { (type, typeComponents) ->
+            if (type == SECURITY_SCHEMES) {
+                filteredComponents.set<JsonNode>(type, typeComponents)
+                return@forEach
+            }
+
+            val filteredTypeComponents = JsonNodeFactory.instance.objectNode()
+
+            typeComponents.fields().forEach { (name, component) ->
+                if ("$COMPONENTS_REFERENCE_PREFIX$type/$name" in requiredComponents) {
+                    filteredTypeComponents.set<JsonNode>(name, component)
+                }
+            }
+
+            filteredComponents.set<JsonNode>(type, filteredTypeComponents)
+        }
+
+        return filteredComponents
+    }
+
+}
+
+/** Bounded LRU cache of filtered documentation prepared to be served as-is */
+internal class FilteredDocumentationCache(
+    maxSize: Int,
+    private val prettyOutputEnabled: Boolean,
+    /** Router with roles of documented operations, null if routes are not known yet */
+    private val internalRouter: InternalRouter?,
+    private val metrics: DocumentationMetrics,
+    private val preparer: (json: ByteArray) -> PreparedDocumentation
+) {
+
+    private companion object {
+        const val CACHE_NAME = "filtered-documentation"
+    }
+
+    private data class Key(
+        /** ETag of the source documentation, so reloaded documentation never reuses stale entries */
+        val etag: String,
+        val filter: DocumentationFilter
+    )
+
+    private val jsonMapper = ObjectMapper()
+    private val cache = LruCache<Key, PreparedDocumentation>(CACHE_NAME, maxSize.toLong(), metrics)
+
+    fun getOrCreate(documentation: PreparedDocumentation, filter: DocumentationFilter): PreparedDocumentation =
+        cache.getOrCreate(Key(documentation.json.identity.etag, filter)) { createFilteredDocumentation(documentation, filter) }
+
+    private fun createFilteredDocumentation(documentation: PreparedDocumentation, filter: DocumentationFilter): PreparedDocumentation {
+        val operationRoles = filter.roles?.let { documentation.getOperationRoles(internalRouter) }
+        val subDocument = documentation.referenceGraph.createSubDocument { filter.matches(it, operationRoles) }
+
+        val json = when {
+            prettyOutputEnabled -> jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(subDocument)
+            else -> jsonMapper.writeValueAsBytes(subDocument)
+        }
+
+        return preparer(json)
+    }
+
+    fun getStatistics(): DocumentationCacheStatistics =
+        metrics.getCacheStatistics(CACHE_NAME).let { DocumentationCacheStatistics(hits = it.hits, misses = it.misses, size = cache.size) }
+
+}
@@ -0,0 +1,224 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import io.javalin.openapi.storage.JettyContentWriter
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.openapi.storage.StoredContent
+import java.io.ByteArrayOutputStream
+import java.io.InputStream
+import java.util.BitSet
+
+/** Location of a single value in prepared JSON content */
+internal data class JsonSlice(val offset: Int, val length: Int)
+
+/** Compact variant of prepared JSON content with offsets of its values, so values referenced by JSON Pointers are served as its slices */
+internal class JsonPointerContent private constructor(
+    val response: PreparedResponse,
+    val index: JsonPointerIndex
+) {
+
+    companion object {
+
+        /** Minifies given content in a single streaming pass and indexes the result */
+        fun create(content: StoredContent, contentType: String?): JsonPointerContent {
+            val compact = content.inputStream().use { JsonPointerIndex.minify(it) }
+
+            return JsonPointerContent(
+                response = PreparedResponse(compact, contentType, writer = JettyContentWriter),
+                index = JsonPointerIndex.create(compact)
+            )
+        }
+
+    }
+
+}
+
+/**
+ * Byte offsets of all values of JSON document, built in a single streaming pass,
+ * so values referenced by JSON Pointers are served as slices of the content without parsing or copying it.
+ *
+ * Values are kept as a trie of plain arrays, nodes are addressed by their position and refer to a range of their children,
+ * so the index doesn't keep a pointer string per value. Field names are shared with the parser's intern cache.
+ */
+internal class JsonPointerIndex private constructor(
+    private val offsets: IntArray,
+    private val lengths: IntArray,
+    /** Position of the first child of a node in [childNames] and [childNodes] */
+    private val firstChildren: IntArray,
+    private val childCounts: IntArray,
+    /** Nodes of arrays, their children are addressed by position instead of name */
+    private val arrays: BitSet,
+    /** Names of children, sorted within a single object, null for elements of arrays */
+    private val childNames: Array<String?>,
+    private val childNodes: IntArray
+) {
+
+    companion object {
+
+        private val jsonFactory = JsonFactory()
+        private val SCALAR_TERMINATORS = " \t\r\n,]}".toByteArray()
+        private const val ROOT = 0
+
+        /** Copies given JSON without insignificant whitespace */
+        fun minify(json: InputStream): ByteArray {
+            val output = ByteArrayOutputStream()
+
+            jsonFactory.createParser(json).use { parser ->
+                jsonFactory.createGenerator(output).use { generator ->
+                    if (parser.nextToken() != null) {
+                        generator.copyCurrentStructure(parser)
+                    }
+                }
+            }
+
+            return output.toByteArray()
+        }
+
+        fun create(json: ByteArray): JsonPointerIndex {
+            val builder = Builder()
+
+            jsonFactory.createParser(json).use { parser ->
+                if (parser.nextToken() != null) {
+                    index(parser, json, builder)
+                }
+            }
+
+            return builder.build()
+        }
+
+        /** Indexes the current value with its children, returns its node */
+        private fun index(parser: JsonParser, json: ByteArray, builder: Builder): Int {
+            val start = parser.currentTokenLocation().byteOffset.toInt()
+            val node = builder.addNode(start)
+
+            when (parser.currentToken()) {
+                JsonToken.START_OBJECT -> {
+                    val children = ArrayList<Pair<String, Int>>()
+
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        val name = parser.currentName()
+                        parser.nextToken()
+                        children.add(name to index(parser, json, builder))
+                    }
+
+                    children.sortBy { it.first }
+                    builder.addChildren(node, children)
+                }
+                JsonToken.START_ARRAY -> {
+                    val children = ArrayList<Pair<String?, Int>>()
+
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        children.add(null to index(parser, json, builder))
+                    }
+
+                    builder.arrays.set(node)
+                    builder.addChildren(node, children)
+                }
+                else -> {}
+            }
+
+            builder.lengths[node] = findEnd(parser, json) - start
+            return node
+        }
+
+        /** Returns offset right after the current value */
+        private fun findEnd(parser: JsonParser, json: ByteArray): Int {
+            if (parser.currentToken().isStructEnd) {
+                return parser.currentLocation().byteOffset.toInt()
+            }
+
+            // scalars may be read lazily, or together with the character that follows them
+            parser.finishToken()
+            var end = parser.currentLocation().byteOffset.toInt()
+
+            while (end > parser.currentTokenLocation().byteOffset && json[end - 1] in SCALAR_TERMINATORS) {
+                end--
+            }
+
+            return end
+        }
+
+        private fun unescape(token: String): String =
+            token.replace("~1", "/").replace("~0", "~")
+
+    }
+
+    /**
+     * Finds value referenced by JSON Pointer, e.g. `/components/schemas/Order`, URI fragment form (`#/...`) is also accepted.
+     *
+     * @return location of the value, or null if there is no such value
+     */
+    fun find(pointer: String): JsonSlice? {
+        val path = pointer.removePrefix("#")
+
+        if (offsets.isEmpty() || (path.isNotEmpty() && !path.startsWith("/"))) {
+            return null
+        }
+
+        var node = ROOT
+
+        if (path.isNotEmpty()) {
+            for (token in path.substring(1).split('/')) {
+                node = findChild(node, unescape(token)) ?: return null
+            }
+        }
+
+        return JsonSlice(offsets[node], lengths[node])
+    }
+
+    private fun findChild(node: Int, token: String): Int? {
+        val first = firstChildren[node]
+        val count = childCounts[node]
+
+        val position =
+            if (arrays[node]) token.toIntOrNull()?.takeIf { it in 0 until count && it.toString() == token }
+            else childNames.binarySearch(token, first, first + count).takeIf { it >= 0 }?.minus(first)
+
+        return position?.let { childNodes[first + it] }
+    }
+
+    private class Builder {
+
+        private val offsets = ArrayList<Int>()
+        val lengths = ArrayList<Int>()
+        private val firstChildren = ArrayList<Int>()
+        private val childCounts = ArrayList<Int>()
+        val arrays = BitSet()
+        private val childNames = ArrayList<String?>()
+        private val childNodes = ArrayList<Int>()
+
+        fun addNode(offset: Int): Int {
+            offsets.add(offset)
+            lengths.add(0)
+            firstChildren.add(0)
+            childCounts.add(0)
+            return offsets.size - 1
+        }
+
+        /** Children are added once their parent is indexed, so children of a single node are stored next to each other */
+        fun addChildren(node: Int, children: List<Pair<String?, Int>>) {
+            firstChildren[node] = childNodes.size
+            childCounts[node] = children.size
+
+            for ((name, child) in children) {
+                childNames.add(name)
+                childNodes.add(child)
+            }
+        }
+
+        fun build(): JsonPointerIndex =
+            JsonPointerIndex(
+                offsets = offsets.toIntArray(),
+                lengths = lengths.toIntArray(),
+                firstChildren = firstChildren.toIntArray(),
+                childCounts = childCounts.toIntArray(),
+                arrays = arrays,
+                childNames = childNames.toTypedArray(),
+                childNodes = childNodes.toIntArray()
+            )
+
+    }
+
+}
@@ -0,0 +1,166 @@
+@file:Suppress("MemberVisibilityCanBePrivate")
+
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import io.javalin.config.JavalinConfig
+import io.javalin.http.Context
+import io.javalin.http.Handler
+import io.javalin.http.Header
+import io.javalin.http.HttpStatus
+import io.javalin.openapi.JsonSchema
+import io.javalin.openapi.JsonSchemaRegistry
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.plugin.Plugin
+import io.javalin.security.RouteRole
+import java.util.function.Consumer
+
+/** Configure JsonSchema plugin */
+class JsonSchemaPluginConfiguration @JvmOverloads constructor(
+    @JvmField var basePath: String = "/json-schemes",
+    @JvmField var roles: List<RouteRole>? = null,
+    @JvmField var prettyOutputEnabled: Boolean = true,
+    @JvmField var compressors: MutableList<DocumentationCompressor> = mutableListOf(GzipDocumentationCompressor()),
+    @JvmField var bundleEnabled: Boolean = false,
+    @JvmField var registry: JsonSchemaRegistry = JsonSchemaRegistry()
+) {
+
+    /** Path to host index of schemas, each schema is served under `{path}/{fully qualified class name}` */
+    fun withBasePath(path: String): JsonSchemaPluginConfiguration = also {
+        this.basePath = path
+    }
+
+    /** List of roles eligible to access JsonSchema routes */
+    fun withRoles(vararg roles: RouteRole): JsonSchemaPluginConfiguration = also {
+        this.roles = roles.toList()
+    }
+
+    @JvmOverloads
+    fun withPrettyOutput(enabled: Boolean = true): JsonSchemaPluginConfiguration = also {
+        this.prettyOutputEnabled = enabled
+    }
+
+    /** Register additional compressor used to prepare encoded variants of schemas, e.g. Brotli */
+    fun withCompressor(compressor: DocumentationCompressor): JsonSchemaPluginConfiguration = also {
+        this.compressors.add(compressor)
+    }
+
+    /** Serve schemas only in their identity encoding */
+    fun withoutCompression(): JsonSchemaPluginConfiguration = also {
+        this.compressors.clear()
+    }
+
+    /** Serve all schemas as `definitions` of a single document under `{basePath}?bundle=true` */
+    @JvmOverloads
+    fun withBundle(enabled: Boolean = true): JsonSchemaPluginConfiguration = also {
+        this.bundleEnabled = enabled
+    }
+
+    /** Source of schemas, e.g. registry of another class loader */
+    fun withRegistry(registry: JsonSchemaRegistry): JsonSchemaPluginConfiguration = also {
+        this.registry = registry
+    }
+
+}
+
+/** Serves JSON Schemas generated for classes annotated with [JsonSchema], prepared once at start */
+open class JsonSchemaPlugin @JvmOverloads constructor(userConfig: Consumer<JsonSchemaPluginConfiguration> = Consumer {}) :
+    Plugin<JsonSchemaPluginConfiguration>(userConfig, JsonSchemaPluginConfiguration()) {
+
+    private val multiplePathOperatorsRegex = Regex("/+")
+
+    override fun onStart(config: JavalinConfig) {
+        val handler = JsonSchemaHandler(prepareSchemas(config.router.contextPath))
+        val roles = pluginConfig.roles?.toTypedArray() ?: emptyArray()
+        val schemaPath = pluginConfig.basePath.trimEnd('/') + "/{name}"
+
+        config.router.mount {
+            it.get(pluginConfig.basePath, handler, *roles)
+            it.head(pluginConfig.basePath, handler, *roles)
+            it.get(schemaPath, handler, *roles)
+            it.head(schemaPath, handler, *roles)
+        }
+    }
+
+    private fun prepareSchemas(contextPath: String): PreparedJsonSchemas {
+        val jsonMapper = ObjectMapper()
+        val writer = if (pluginConfig.prettyOutputEnabled) jsonMapper.writerWithDefaultPrettyPrinter() else jsonMapper.writer()
+        val registeredSchemas = pluginConfig.registry.getSchemas()
+
+        // schemas are served exactly as generated, only the index and the bundle are rendered
+        val schemas = registeredSchemas.associate { it.name to prepareJson(it.toByteArray()) }
+
+        val bundle = when {
+            pluginConfig.bundleEnabled -> {
+                val bundleNode = jsonMapper.createObjectNode().put("\$schema", JsonSchemaHandler.DRAFT_07)
+                val definitions = bundleNode.putObject("definitions")
+                registeredSchemas.forEach { definitions.set<ObjectNode>(it.name, it.getNode().deepCopy<ObjectNode>().apply { remove("\$schema") }) }
+                prepareJson(writer.writeValueAsBytes(bundleNode))
+            }
+            else -> null
+        }
+
+        // links contain hashes of schemas, so documents fetched through the index can be cached forever
+        val basePath = (contextPath + pluginConfig.basePath).replace(multiplePathOperatorsRegex, "/").trimEnd('/')
+        val indexNode = jsonMapper.createObjectNode()
+        val links = indexNode.putObject("schemas")
+        schemas.forEach { (name, schema) -> links.put(name, "$basePath/$name?${JsonSchemaHandler.REVISION_PARAMETER}=${schema.revision}") }
+        bundle?.let { indexNode.put("bundle", "$basePath?bundle=true&${JsonSchemaHandler.REVISION_PARAMETER}=${it.revision}") }
+
+        return PreparedJsonSchemas(prepareJson(writer.writeValueAsBytes(indexNode)), schemas, bundle)
+    }
+
+    private fun prepareJson(content: ByteArray): PreparedFormat =
+        PreparedFormat(content, DocumentationFormat.JSON, pluginConfig.compressors)
+
+}
+
+internal class PreparedJsonSchemas(
+    val index: PreparedFormat,
+    /** Schemas keyed by fully qualified class name */
+    val schemas: Map<String, PreparedFormat>,
+    /** All schemas in a single document, if enabled */
+    val bundle: PreparedFormat?
+)
+
+/** Content hash used in links to immutable schemas */
+internal val PreparedFormat.revision: String
+    get() = identity.etag.trim('"')
+
+internal class JsonSchemaHandler(private val prepared: PreparedJsonSchemas) : Handler {
+
+    companion object {
+        const val DRAFT_07 = "http://json-schema.org/draft-07/schema#"
+        const val REVISION_PARAMETER = "r"
+        private const val SCHEMA_SUFFIX = ".json"
+    }
+
+    override fun handle(context: Context) {
+        val name = context.pathParamMap()["name"]?.removeSuffix(SCHEMA_SUFFIX)
+
+        val format = when {
+            name != null -> prepared.schemas[name]
+            context.queryParam("bundle").toBoolean() -> prepared.bundle
+            else -> prepared.index
+        }
+
+        if (format == null) {
+            context.status(HttpStatus.NOT_FOUND)
+            return
+        }
+
+        val representation = format.select(context.header(Header.ACCEPT_ENCODING))
+        // the index lists current revisions, so it has to be revalidated
+        val immutable = format !== prepared.index && context.queryParam(REVISION_PARAMETER) == format.revision
+
+        context.allowCrossOriginReads()
+
+        if (format.compressed.isNotEmpty()) {
+            context.header(Header.VARY, Header.ACCEPT_ENCODING)
+        }
+
+        representation.serve(context, if (immutable) PreparedResponse.IMMUTABLE else PreparedResponse.REVALIDATE)
+    }
+
+}
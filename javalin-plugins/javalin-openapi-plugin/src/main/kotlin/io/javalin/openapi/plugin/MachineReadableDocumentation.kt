@@ -0,0 +1,99 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import java.io.ByteArrayOutputStream
+
+/** Creates minified variant of documentation without prose and examples, meant for code generators, gateways and other tools */
+internal object MachineReadableDocumentation {
+
+    /** Value of `variant` query parameter and `profile` parameter of Accept header */
+    const val VARIANT_NAME = "machine"
+
+    /** Fields with text for humans, removed wherever they are keywords of OpenApi objects */
+    private val STRIPPED_FIELDS = setOf("description", "summary", "example", "examples")
+
+    /** Fields whose values are maps keyed by names chosen by users, e.g. property named `description` */
+    private val NAMED_CHILDREN_FIELDS = setOf(
+        "paths", "properties", "patternProperties", "schemas", "responses", "parameters", "requestBodies", "headers", "securitySchemes",
+        "content", "callbacks", "links", "encoding", "mapping", "variables", "scopes"
+    )
+
+    /** Fields with arbitrary values copied as they are */
+    private val OPAQUE_FIELDS = setOf("default", "enum", "const")
+
+    private val jsonFactory = JsonFactory()
+
+    /** Checks if machine readable variant is requested by `variant` query parameter or `profile` parameter of Accept header */
+    fun isRequested(variant: String?, accept: String?): Boolean =
+        when {
+            variant != null -> variant.equals(VARIANT_NAME, ignoreCase = true)
+            accept == null -> false
+            else -> accept.split(',').any { mediaRange ->
+                mediaRange.split(';').drop(1).any { it.trim().replace("\"", "").equals("profile=$VARIANT_NAME", ignoreCase = true) }
+            }
+        }
+
+    /** Removes prose and examples from documentation in a single pass over its tokens, output is not indented */
+    fun strip(json: ByteArray): ByteArray {
+        val output = ByteArrayOutputStream(json.size / 2)
+
+        jsonFactory.createParser(json).use { parser ->
+            jsonFactory.createGenerator(output).use { generator ->
+                parser.nextToken()
+                copy(parser, generator, namedChildren = false, requiresDescription = false)
+            }
+        }
+
+        return output.toByteArray()
+    }
+
+    private fun copy(parser: JsonParser, generator: JsonGenerator, namedChildren: Boolean, requiresDescription: Boolean) {
+        when (parser.currentToken()) {
+            JsonToken.START_OBJECT -> {
+                generator.writeStartObject()
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    val name = parser.currentName()
+                    parser.nextToken()
+
+                    when {
+                        namedChildren -> {
+                            generator.writeFieldName(name)
+                            copy(parser, generator, namedChildren = false, requiresDescription = requiresDescription)
+                        }
+                        // response objects are the only ones with required description
+                        name == "description" && requiresDescription -> {
+                            parser.skipChildren()
+                            generator.writeStringField(name, "")
+                        }
+                        name in STRIPPED_FIELDS -> parser.skipChildren()
+                        name in OPAQUE_FIELDS || name.startsWith("x-") -> {
+                            generator.writeFieldName(name)
+                            generator.copyCurrentStructure(parser)
+                        }
+                        else -> {
+                            generator.writeFieldName(name)
+                            copy(parser, generator, namedChildren = name in NAMED_CHILDREN_FIELDS, requiresDescription = name == "responses")
+                        }
+                    }
+                }
+
+                generator.writeEndObject()
+            }
+            JsonToken.START_ARRAY -> {
+                generator.writeStartArray()
+
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    copy(parser, generator, namedChildren = false, requiresDescription = false)
+                }
+
+                generator.writeEndArray()
+            }
+            else -> generator.copyCurrentEvent(parser)
+        }
+    }
+
+}
@@ -2,27 +2,59 @@
 
 package io.javalin.openapi.plugin
 
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.databind.node.ObjectNode
+import io.javalin.http.Context
 import io.javalin.openapi.ApiKeyAuth
 import io.javalin.openapi.BasicAuth
 import io.javalin.openapi.BearerAuth
 import io.javalin.openapi.CookieAuth
+import io.javalin.openapi.HttpMethod
 import io.javalin.openapi.OAuth2
 import io.javalin.openapi.OpenApiInfo
 import io.javalin.openapi.OpenApiServer
 import io.javalin.openapi.OpenID
 import io.javalin.openapi.Security
 import io.javalin.openapi.SecurityScheme
+import io.javalin.openapi.data.OpenApiDocumentation
+import io.javalin.openapi.storage.ContentStorage
+import io.javalin.openapi.storage.DirectContentStorage
+import io.javalin.openapi.storage.HeapContentStorage
+import io.javalin.openapi.storage.MappedFileContentStorage
 import io.javalin.security.RouteRole
+import java.io.ByteArrayOutputStream
+import java.nio.file.Path
 import java.util.function.BiConsumer
 import java.util.function.Consumer
+import java.util.zip.Deflater
+import java.util.zip.GZIPOutputStream
 
 /** Configure OpenApi plugin */
 class OpenApiPluginConfiguration @JvmOverloads constructor(
     @JvmField var documentationPath: String = "/openapi",
     @JvmField var roles: List<RouteRole>? = null,
     @JvmField var prettyOutputEnabled: Boolean = true,
-    @JvmField var definitionConfiguration: BiConsumer<String, DefinitionConfiguration>? = null
+    @JvmField var definitionConfiguration: BiConsumer<String, DefinitionConfiguration>? = null,
+    @JvmField var compressors: MutableList<DocumentationCompressor> = mutableListOf(GzipDocumentationCompressor()),
+    @JvmField var eagerPreparationEnabled: Boolean = false,
+    @JvmField var preparationParallelism: Int = Runtime.getRuntime().availableProcessors(),
+    @JvmField var rawFallbackEnabled: Boolean = false,
+    @JvmField var hotReloadEnabled: Boolean = false,
+    @JvmField var hotReloadDirectory: Path? = null,
+    @JvmField var yamlOutputEnabled: Boolean = false,
+    @JvmField var smileOutputEnabled: Boolean = false,
+    @JvmField var cborOutputEnabled: Boolean = false,
+    @JvmField var filteredDocumentationCacheSize: Int = 64,
+    @JvmField var documentationDiffCacheSize: Int = 64,
+    @JvmField var shardedComponentsEnabled: Boolean = false,
+    @JvmField var shardedDocumentationCacheSize: Int = 16,
+    @JvmField var machineVariantEnabled: Boolean = false,
+    @JvmField var roleResolver: DocumentationRoleResolver? = null,
+    @JvmField var storage: ContentStorage = HeapContentStorage(),
+    @JvmField var statisticsPath: String? = null,
+    @JvmField var requestValidation: RequestValidationConfiguration? = null,
+    @JvmField var documentations: MutableList<OpenApiDocumentation> = mutableListOf()
 ) {
 
     /** Path to host documentation as JSON */
@@ -46,6 +78,215 @@ class OpenApiPluginConfiguration @JvmOverloads constructor(
         definitionConfiguration = definitionConfigurationConfigurer
     }
 
+    /**
+     * Prepare YAML variant of documentation, served for `application/yaml` Accept header or `?format=yaml` query parameter.
+     * Requires `com.fasterxml.jackson.dataformat:jackson-dataformat-yaml` on the classpath.
+     */
+    @JvmOverloads
+    fun withYamlOutput(enabled: Boolean = true): OpenApiPluginConfiguration = also {
+        this.yamlOutputEnabled = enabled
+    }
+
+    /**
+     * Prepare Smile variant of documentation, served for `application/x-jackson-smile` Accept header or `?format=smile` query parameter.
+     */
+    @JvmOverloads
+    fun withSmileOutput(enabled: Boolean = true): OpenApiPluginConfiguration = also {
+        this.smileOutputEnabled = enabled
+    }
+
+    /**
+     * Prepare CBOR variant of documentation, served for `application/cbor` Accept header or `?format=cbor` query parameter.
+     */
+    @JvmOverloads
+    fun withCborOutput(enabled: Boolean = true): OpenApiPluginConfiguration = also {
+        this.cborOutputEnabled = enabled
+    }
+
+    /**
+     * Prepare minified variant of documentation without descriptions, summaries and examples for tools such as code generators,
+     * served for `?variant=machine` query parameter or `profile=machine` parameter of Accept header, e.g. `application/json; profile=machine`.
+     */
+    @JvmOverloads
+    fun withMachineVariant(enabled: Boolean = true): OpenApiPluginConfiguration = also {
+        this.machineVariantEnabled = enabled
+    }
+
+    /** Max number of documents filtered by `tags` and `pathPrefix` query parameters kept in memory */
+    fun withFilteredDocumentationCacheSize(size: Int): OpenApiPluginConfiguration = also {
+        this.filteredDocumentationCacheSize = size
+    }
+
+    /** Max number of JSON Patches between versions, requested with `?v=<target>&diffFrom=<source>`, kept in memory */
+    fun withDocumentationDiffCacheSize(size: Int): OpenApiPluginConfiguration = also {
+        this.documentationDiffCacheSize = size
+    }
+
+    /**
+     * Serve root document with paths, and each component as a separate document referenced with relative external reference,
+     * so clients download only the components they need. Documentation with all components is served for `?bundle=true`.
+     * Shards are served from `<documentationPath>/components/<version>/<type>/<name>.json` and cached by clients until the documentation changes.
+     */
+    @JvmOverloads
+    fun withShardedComponents(enabled: Boolean = true): OpenApiPluginConfiguration = also {
+        this.shardedComponentsEnabled = enabled
+    }
+
+    /** Max number of sharded documents, each with all shards of a single revision of a version, kept in memory */
+    fun withShardedDocumentationCacheSize(size: Int): OpenApiPluginConfiguration = also {
+        this.shardedDocumentationCacheSize = size
+    }
+
+    /**
+     * Serve each user only the operations their roles can call.
+     * Roles of operations are taken from Javalin routes, operations handled by routes without roles are visible to everyone.
+     * Views are prepared once per distinct set of roles and kept in the cache of filtered documentation.
+     */
+    fun withRoleFilteredViews(roleResolver: DocumentationRoleResolver): OpenApiPluginConfiguration = also {
+        this.roleResolver = roleResolver
+    }
+
+    /** Storage of prepared documentation, use [DirectContentStorage] or [MappedFileContentStorage] to keep it outside the heap */
+    fun withStorage(storage: ContentStorage): OpenApiPluginConfiguration = also {
+        this.storage = storage
+    }
+
+    /** Path to host statistics of served documentation as JSON */
+    fun withStatisticsEndpoint(path: String): OpenApiPluginConfiguration = also {
+        this.statisticsPath = path
+    }
+
+    /**
+     * Validate parameters and JSON bodies of documented requests before they're handled,
+     * invalid requests are rejected with `400 Bad Request` and `application/problem+json` list of errors.
+     * Schemas are compiled once per version of documentation, so validation doesn't interpret them per request.
+     */
+    @JvmOverloads
+    fun withRequestValidation(configurer: Consumer<RequestValidationConfiguration> = Consumer {}): OpenApiPluginConfiguration = also {
+        this.requestValidation = RequestValidationConfiguration().also { configurer.accept(it) }
+    }
+
+    /** Describe routes that are not covered by documentation generated at compile time, e.g. registered dynamically */
+    fun withDocumentation(vararg documentations: OpenApiDocumentation): OpenApiPluginConfiguration = also {
+        this.documentations.addAll(documentations)
+    }
+
+    /** Register additional compressor used to prepare encoded variants of documentation, e.g. Brotli */
+    fun withCompressor(compressor: DocumentationCompressor): OpenApiPluginConfiguration = also {
+        this.compressors.add(compressor)
+    }
+
+    /** Serve documentation only in its identity encoding */
+    fun withoutCompression(): OpenApiPluginConfiguration = also {
+        this.compressors.clear()
+    }
+
+    /**
+     * Prepare all versions of documentation in background during plugin start instead of on the first request.
+     *
+     * @param parallelism max number of versions prepared at the same time
+     * @param rawFallback serve documentation as generated by annotation processor until it's prepared, instead of responding with 503
+     */
+    @JvmOverloads
+    fun withEagerPreparation(parallelism: Int = Runtime.getRuntime().availableProcessors(), rawFallback: Boolean = false): OpenApiPluginConfiguration = also {
+        this.eagerPreparationEnabled = true
+        this.preparationParallelism = parallelism
+        this.rawFallbackEnabled = rawFallback
+    }
+
+    /**
+     * Watch generated documentation and reload changed versions without restarting the application.
+     *
+     * @param directory external directory with `.index` and `openapi-*.json` files, exploded classpath is used if not specified
+     */
+    @JvmOverloads
+    fun withHotReload(directory: Path? = null): OpenApiPluginConfiguration = also {
+        this.hotReloadEnabled = true
+        this.hotReloadDirectory = directory
+    }
+
+}
+
+/** Configure validation of requests against generated documentation */
+class RequestValidationConfiguration @JvmOverloads constructor(
+    /** Version of documentation describing validated operations */
+    @JvmField var documentationVersion: String = "default",
+    @JvmField var enabledByDefault: Boolean = true,
+    /** Operations validated or skipped regardless of [enabledByDefault], keyed by operation id or `METHOD /path` */
+    @JvmField var operations: MutableMap<String, Boolean> = mutableMapOf(),
+    /** Operations with bodies validated while handler reads them, keyed by operation id or `METHOD /path` */
+    @JvmField var streamingBodies: MutableSet<String> = mutableSetOf()
+) {
+
+    fun withDocumentationVersion(version: String): RequestValidationConfiguration = also {
+        this.documentationVersion = version
+    }
+
+    /** Validate only operations enabled explicitly */
+    fun withDisabledByDefault(): RequestValidationConfiguration = also {
+        this.enabledByDefault = false
+    }
+
+    @JvmOverloads
+    fun withOperation(operationId: String, enabled: Boolean = true): RequestValidationConfiguration = also {
+        this.operations[operationId] = enabled
+    }
+
+    /** @param path documented path, e.g. `/orders/{id}` */
+    @JvmOverloads
+    fun withOperation(method: HttpMethod, path: String, enabled: Boolean = true): RequestValidationConfiguration = also {
+        this.operations["${method.name} $path"] = enabled
+    }
+
+    /**
+     * Validate body of operation while handler reads it with [ValidatedRequestBody], instead of reading it into a tree up front.
+     * Meant for large uploads, invalid bodies are rejected as soon as the first violation is read.
+     */
+    fun withStreamingBody(operationId: String): RequestValidationConfiguration = also {
+        this.streamingBodies.add(operationId)
+    }
+
+    /** @param path documented path, e.g. `/imports` */
+    fun withStreamingBody(method: HttpMethod, path: String): RequestValidationConfiguration = also {
+        this.streamingBodies.add("${method.name} $path")
+    }
+
+    internal fun isStreaming(method: String, path: String, operationId: String?): Boolean =
+        (operationId != null && operationId in streamingBodies) || "${method.uppercase()} $path" in streamingBodies
+
+    internal fun isEnabled(method: String, path: String, operationId: String?): Boolean =
+        operationId?.let { operations[it] }
+            ?: operations["${method.uppercase()} $path"]
+            ?: enabledByDefault
+
+}
+
+/** Resolves roles of the user requesting documentation */
+fun interface DocumentationRoleResolver {
+    fun resolve(context: Context): Set<RouteRole>
+}
+
+/** Compresses documentation once, so the result can be served to all clients that accept given [encoding] */
+interface DocumentationCompressor {
+    /** Content coding, used as Content-Encoding header value */
+    val encoding: String
+    fun compress(content: ByteArray): ByteArray
+}
+
+/** Default [DocumentationCompressor] based on [GZIPOutputStream] */
+class GzipDocumentationCompressor @JvmOverloads constructor(private val level: Int = Deflater.BEST_COMPRESSION) : DocumentationCompressor {
+
+    override val encoding: String = "gzip"
+
+    override fun compress(content: ByteArray): ByteArray {
+        val output = ByteArrayOutputStream(content.size / 4)
+
+        object : GZIPOutputStream(output) { init { def.setLevel(level) } }
+            .use { it.write(content) }
+
+        return output.toByteArray()
+    }
+
 }
 
 /** Modify OpenApi documentation represented by [ObjectNode] in JSON format */
@@ -53,11 +294,18 @@ fun interface DefinitionProcessor {
     fun process(content: ObjectNode): String
 }
 
+/** Modify OpenApi documentation as a stream of JSON tokens, so the whole document doesn't have to be loaded as a tree */
+fun interface StreamingDefinitionProcessor {
+    /** Copy tokens of the documentation from [parser] to [generator], applying custom changes on the way */
+    fun process(parser: JsonParser, generator: JsonGenerator)
+}
+
 class DefinitionConfiguration @JvmOverloads constructor(
     @JvmField @JvmSynthetic internal var info: OpenApiInfo? = null,
     @JvmField @JvmSynthetic internal var servers: MutableList<OpenApiServer> = mutableListOf(),
     @JvmField @JvmSynthetic internal var security: SecurityComponentConfiguration? = null,
-    @JvmField @JvmSynthetic internal var definitionProcessor: DefinitionProcessor? = null
+    @JvmField @JvmSynthetic internal var definitionProcessor: DefinitionProcessor? = null,
+    @JvmField @JvmSynthetic internal var streamingDefinitionProcessor: StreamingDefinitionProcessor? = null
 ) {
 
     /** Define custom info object */
@@ -96,6 +344,11 @@ class DefinitionConfiguration @JvmOverloads constructor(
         this.definitionProcessor = definitionProcessor
     }
 
+    /** Register streaming scheme processor, applied after all other changes */
+    fun withStreamingDefinitionProcessor(streamingDefinitionProcessor: StreamingDefinitionProcessor): DefinitionConfiguration = also {
+        this.streamingDefinitionProcessor = streamingDefinitionProcessor
+    }
+
 }
 
 class SecurityComponentConfiguration @JvmOverloads constructor(
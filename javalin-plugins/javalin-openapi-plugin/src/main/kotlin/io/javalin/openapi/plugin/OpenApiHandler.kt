@@ -1,18 +1,180 @@
 package io.javalin.openapi.plugin
 
-import io.javalin.http.ContentType
 import io.javalin.http.Context
 import io.javalin.http.Handler
 import io.javalin.http.Header
+import io.javalin.http.HttpStatus
+import io.javalin.openapi.OpenApiDiff
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.storage.PreparedResponse
 
-internal class OpenApiHandler(private val documentation: Lazy<Map<String, String>>) : Handler {
+internal class OpenApiHandler(
+    private val documentationProvider: DocumentationProvider,
+    private val filteredDocumentationCache: FilteredDocumentationCache,
+    private val documentationDiffCache: DocumentationDiffCache,
+    /** Supplies patches generated by annotation processor, if they match prepared documentation */
+    private val precomputedDiffs: (sourceVersion: String, targetVersion: String) -> ByteArray?,
+    /** Splits documentation into root document and shards of components, null if documentation is served as a single document */
+    private val shardedDocumentationCache: ShardedDocumentationCache?,
+    private val roleResolver: DocumentationRoleResolver?,
+    private val rawFallbackEnabled: Boolean,
+    private val metrics: DocumentationMetrics
+) : Handler {
+
+    private companion object {
+        const val DEFAULT_VERSION = "default"
+        const val ROUTE = "documentation"
+        const val COMPONENT_ROUTE = "component"
+        const val COMPONENT_SUFFIX = ".json"
+        const val RETRY_AFTER = "Retry-After"
+        const val RETRY_AFTER_SECONDS = "1"
+        const val VARY_FORMATS = "Accept, Accept-Encoding"
+        val EMPTY_DOCUMENTATION = PreparedDocumentation("{}".toByteArray())
+    }
 
     override fun handle(context: Context) {
+        val start = System.nanoTime()
+        // shards of components are served by the same handler under the path with version and name of the component
+        val pathParameters = context.pathParamMap()
+        val version = pathParameters["version"] ?: context.queryParam("v") ?: DEFAULT_VERSION
+        val component = pathParameters["type"]?.let { type -> pathParameters["name"]?.let { name -> "$type/${name.removeSuffix(COMPONENT_SUFFIX)}" } }
+        val bytes = serve(context, version, component)
+        // versions come from query parameters, so only the prepared ones are recorded separately
+        metrics.recordRequest(if (component == null) ROUTE else COMPONENT_ROUTE, version.takeIf { documentationProvider.isPrepared(it) }, bytes, System.nanoTime() - start)
+    }
+
+    /** Returns number of bytes written to the response body */
+    private fun serve(context: Context, version: String, component: String?): Long {
+        val filter = DocumentationFilter.from(context, roleResolver)
+        val diffFrom = context.queryParam("diffFrom")
+
+        val sourceDocumentation = when (diffFrom) {
+            null -> findDocumentation(context, version)?.let { preparedDocumentation ->
+                filter
+                    ?.let { filteredDocumentationCache.getOrCreate(preparedDocumentation, it) }
+                    ?: preparedDocumentation
+            }
+            else -> findDiff(context, diffFrom, version, filter)
+        } ?: return 0
+
+        val shardedDocumentation = shardedDocumentationCache
+            ?.takeIf { diffFrom == null && documentationProvider.hasVersion(version) }
+            ?.getOrCreate(version, sourceDocumentation)
+
+        val requestedDocumentation = when {
+            component != null -> shardedDocumentation?.shards?.get(component)
+                ?: run {
+                    context.status(HttpStatus.NOT_FOUND)
+                    return 0
+                }
+            // documentation with all components is assembled only on request
+            shardedDocumentation == null || context.queryParam("bundle").toBoolean() -> sourceDocumentation
+            else -> shardedDocumentation.root
+        }
+
+        val documentation = requestedDocumentation.machine
+            ?.takeIf { MachineReadableDocumentation.isRequested(context.queryParam("variant"), context.header(Header.ACCEPT)) }
+            ?: requestedDocumentation
+
+        context.queryParam("pointer")?.let { pointer ->
+            return servePointer(context, documentation, pointer)
+        }
+
+        val format = when (val formatName = context.queryParam("format")) {
+            null -> documentation.select(context.header(Header.ACCEPT))
+            else -> DocumentationFormat.findByName(formatName)?.let { documentation.formats[it] }
+        }
+
+        if (format == null) {
+            context.status(HttpStatus.NOT_ACCEPTABLE)
+            return 0
+        }
+
+        val representation = format.select(context.header(Header.ACCEPT_ENCODING))
+
+        context.allowCrossOriginReads()
+
+        when {
+            requestedDocumentation.formats.size > 1 || requestedDocumentation.machine != null -> context.header(Header.VARY, VARY_FORMATS)
+            format.compressed.isNotEmpty() -> context.header(Header.VARY, Header.ACCEPT_ENCODING)
+        }
+
+        val cacheControl = component?.let {
+            // references to shards contain revision of the documentation, so shards requested with the current one never change
+            val immutable = context.queryParam(ShardedDocumentationCache.REVISION_PARAMETER) == shardedDocumentation?.revision
+            if (immutable) PreparedResponse.IMMUTABLE else PreparedResponse.REVALIDATE
+        }
+
+        return representation.serve(context, cacheControl, if (diffFrom == null) format.format.contentType else OpenApiDiff.JSON_PATCH_CONTENT_TYPE)
+    }
+
+    /** Serves value referenced by JSON Pointer as a slice of compact JSON content, returns number of written bytes */
+    private fun servePointer(context: Context, documentation: PreparedDocumentation, pointer: String): Long {
+        val pointerContent = documentation.pointerContent
+        val slice = pointerContent.index.find(pointer)
+
+        if (slice == null) {
+            context.status(HttpStatus.NOT_FOUND)
+            return 0
+        }
+
+        context.allowCrossOriginReads()
+
+        return pointerContent.response.serveSlice(context, slice.offset, slice.length, cacheControl = null)
+    }
+
+    /** Returns documentation of given version, or null if response has been already completed */
+    private fun findDocumentation(context: Context, version: String): PreparedDocumentation? =
+        when (val prepared = documentationProvider.getDocumentationIfReady()) {
+            null -> when {
+                documentationProvider.readiness != DocumentationReadiness.PREPARING -> documentationProvider.getDocumentation()[version]
+                rawFallbackEnabled -> documentationProvider.getRawDocumentation(version)
+                else -> {
+                    respondWithRetry(context)
+                    return null
+                }
+            }
+            else -> prepared[version]
+        } ?: EMPTY_DOCUMENTATION
+
+    /** Returns JSON Patch from [sourceVersion] to [targetVersion], or null if response has been already completed */
+    private fun findDiff(context: Context, sourceVersion: String, targetVersion: String, filter: DocumentationFilter?): PreparedDocumentation? {
+        // patches are computed only between prepared documents, raw documentation may differ from them
+        val documentations = documentationProvider.getDocumentationIfReady()
+            ?: when (documentationProvider.readiness) {
+                DocumentationReadiness.PREPARING -> {
+                    respondWithRetry(context)
+                    return null
+                }
+                else -> documentationProvider.getDocumentation()
+            }
+
+        val source = documentations[sourceVersion]
+        val target = documentations[targetVersion]
+
+        if (source == null || target == null) {
+            context.status(HttpStatus.NOT_FOUND)
+            return null
+        }
+
+        return when (filter) {
+            null -> documentationDiffCache.getOrCreate(source, target) { precomputedDiffs(sourceVersion, targetVersion) }
+            // patch between filtered documents, so it never reveals operations hidden by the filter
+            else -> documentationDiffCache.getOrCreate(filteredDocumentationCache.getOrCreate(source, filter), filteredDocumentationCache.getOrCreate(target, filter))
+        }
+    }
+
+    private fun respondWithRetry(context: Context) {
         context
-            .header(Header.ACCESS_CONTROL_ALLOW_ORIGIN, "*")
-            .header(Header.ACCESS_CONTROL_ALLOW_METHODS, "GET")
-            .contentType(ContentType.JSON)
-            .result(documentation.value[context.queryParamMap()["v"]?.firstOrNull() ?: "default"] ?: "{}")
+            .header(RETRY_AFTER, RETRY_AFTER_SECONDS)
+            .status(HttpStatus.SERVICE_UNAVAILABLE)
     }
 
-}
\ No newline at end of file
+}
+
+private const val ALLOWED_METHODS = "GET, HEAD"
+
+/** Documents and schemas are read-only public resources, so tools hosted on other origins can read them */
+internal fun Context.allowCrossOriginReads(): Context =
+    header(Header.ACCESS_CONTROL_ALLOW_ORIGIN, "*")
+        .header(Header.ACCESS_CONTROL_ALLOW_METHODS, ALLOWED_METHODS)
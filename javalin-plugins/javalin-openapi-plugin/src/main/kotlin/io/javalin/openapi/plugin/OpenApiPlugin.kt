@@ -5,45 +5,269 @@ import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.node.ObjectNode
 import io.javalin.config.JavalinConfig
+import io.javalin.openapi.OpenApiDirectoryWatcher
 import io.javalin.openapi.OpenApiLoader
+import io.javalin.openapi.data.OpenApiDocumentation
+import io.javalin.openapi.data.OpenApiDocumentationEngine
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.metrics.DocumentationMetricsHandler
+import io.javalin.openapi.metrics.DocumentationMetricsProvider
 import io.javalin.plugin.Plugin
+import io.javalin.router.InternalRouter
 import java.util.function.Consumer
 
-open class OpenApiPlugin(userConfig: Consumer<OpenApiPluginConfiguration>) : Plugin<OpenApiPluginConfiguration>(userConfig, OpenApiPluginConfiguration()) {
+open class OpenApiPlugin(userConfig: Consumer<OpenApiPluginConfiguration>) : Plugin<OpenApiPluginConfiguration>(userConfig, OpenApiPluginConfiguration()), DocumentationMetricsProvider {
+
+    private val metrics = DocumentationMetrics("openapi")
+
+    // skip nulls from cfg
+    private val jsonMapper by lazy {
+        ObjectMapper().setSerializationInclusion(Include.NON_NULL)
+    }
+
+    private val loader by lazy {
+        OpenApiLoader(pluginConfig.hotReloadDirectory)
+    }
+
+    private val documentationProvider by lazy {
+        DocumentationProvider(
+            loader = loader,
+            preparer = { version, rawDocs -> prepareDocumentation(version, rawDocs) },
+            evicted = { version -> metrics.removeRetainedBytes(version) },
+            runtimeVersions = { documentationEngine.getVersions() }
+        )
+    }
+
+    private val documentationEngine by lazy {
+        OpenApiDocumentationEngine(pluginConfig.prettyOutputEnabled).also { engine ->
+            pluginConfig.documentations.forEach { engine.register(it) }
+        }
+    }
+
+    private var internalRouter: InternalRouter? = null
+
+    private val filteredDocumentationCache by lazy {
+        FilteredDocumentationCache(
+            maxSize = pluginConfig.filteredDocumentationCacheSize,
+            prettyOutputEnabled = pluginConfig.prettyOutputEnabled,
+            internalRouter = internalRouter,
+            metrics = metrics,
+            preparer = { json -> prepareFormats(json) }
+        )
+    }
+
+    private val documentationDiffCache by lazy {
+        DocumentationDiffCache(
+            maxSize = pluginConfig.documentationDiffCacheSize,
+            prettyOutputEnabled = pluginConfig.prettyOutputEnabled,
+            metrics = metrics,
+            preparer = { patch -> PreparedDocumentation(mapOf(DocumentationFormat.JSON to prepareFormat(patch, DocumentationFormat.JSON))) }
+        )
+    }
+
+    private val shardedDocumentationCache by lazy {
+        ShardedDocumentationCache(
+            maxSize = pluginConfig.shardedDocumentationCacheSize,
+            prettyOutputEnabled = pluginConfig.prettyOutputEnabled,
+            documentationPath = pluginConfig.documentationPath,
+            metrics = metrics,
+            rootPreparer = { json -> prepareFormats(json) },
+            shardPreparer = { json -> PreparedDocumentation(mapOf(DocumentationFormat.JSON to prepareFormat(json, DocumentationFormat.JSON))) }
+        )
+    }
 
     override fun onStart(config: JavalinConfig) {
+        internalRouter = config.pvt.internalRouter
+
+        if (pluginConfig.eagerPreparationEnabled) {
+            documentationProvider.prepareEagerly(pluginConfig.preparationParallelism)
+        }
+
+        if (pluginConfig.hotReloadEnabled) {
+            val watcher = createDocumentationWatcher().start()
+            config.events { it.serverStopped { watcher.close() } }
+        }
+
+        val openApiHandler = OpenApiHandler(
+            documentationProvider = documentationProvider,
+            filteredDocumentationCache = filteredDocumentationCache,
+            documentationDiffCache = documentationDiffCache,
+            precomputedDiffs = { sourceVersion, targetVersion -> loadPrecomputedDiff(sourceVersion, targetVersion) },
+            shardedDocumentationCache = shardedDocumentationCache.takeIf { pluginConfig.shardedComponentsEnabled },
+            roleResolver = pluginConfig.roleResolver,
+            rawFallbackEnabled = pluginConfig.rawFallbackEnabled,
+            metrics = metrics
+        )
+        val roles = pluginConfig.roles?.toTypedArray() ?: emptyArray()
+
         config.router.mount {
-            it.get(
-                pluginConfig.documentationPath,
-                OpenApiHandler(createDocumentation()),
-                *pluginConfig.roles?.toTypedArray() ?: emptyArray()
-            )
+            it.get(pluginConfig.documentationPath, openApiHandler, *roles)
+            it.head(pluginConfig.documentationPath, openApiHandler, *roles)
+
+            if (pluginConfig.shardedComponentsEnabled) {
+                val componentPath = pluginConfig.documentationPath.trimEnd('/') + "/components/{version}/{type}/{name}"
+                it.get(componentPath, openApiHandler, *roles)
+                it.head(componentPath, openApiHandler, *roles)
+            }
+
+            pluginConfig.statisticsPath?.let { path -> it.get(path, DocumentationMetricsHandler(metrics), *roles) }
+        }
+
+        pluginConfig.requestValidation?.let { validationConfig ->
+            val requestValidator = RequestValidator(validationConfig) { findValidatedDocumentation(validationConfig.documentationVersion) }
+
+            val exceptionHandler = RequestValidationExceptionHandler()
+
+            config.router.mount {
+                it.beforeMatched(requestValidator)
+                it.exception(RequestValidationException::class.java, exceptionHandler)
+                it.exception(RequestBodyValidationException::class.java) { exception, context -> exceptionHandler.handle(exception, context) }
+            }
+
+            // schemas are compiled before the first request, and again only when documentation changes
+            config.events { it.serverStarted { requestValidator.compile() } }
         }
     }
 
-    private fun createDocumentation(): Lazy<Map<String, String>> =
-        lazy {
-            // skip nulls from cfg
-            val jsonMapper = lazy {
-                ObjectMapper().setSerializationInclusion(Include.NON_NULL)
+    /** Current state of documentation preparation */
+    fun readiness(): DocumentationReadiness =
+        documentationProvider.readiness
+
+    /** Cause of failed background preparation if [readiness] is [DocumentationReadiness.FAILED], null otherwise */
+    fun readinessFailure(): Throwable? =
+        documentationProvider.failure
+
+    /** Statistics of cache with documentation filtered by tags and path prefix */
+    fun filteredDocumentationStatistics(): DocumentationCacheStatistics =
+        filteredDocumentationCache.getStatistics()
+
+    /** Adds documentation of a route registered at runtime, already prepared documentation is updated only with its operations */
+    fun addDocumentation(documentation: OpenApiDocumentation) {
+        val updatedVersions = documentationEngine.register(documentation)
+
+        updatedVersions.forEach { (version, json) ->
+            documentationProvider.publish(version, prepareFormats(json).also { recordRetainedBytes(version, it) })
+        }
+
+        // versions that weren't described at runtime so far have to be rendered from scratch
+        documentationEngine.getVersions()
+            .filter { it !in updatedVersions && !documentationEngine.isRendered(it) }
+            .forEach { documentationProvider.reload(it) }
+    }
+
+    /** Statistics of served documentation */
+    override fun getMetrics(): DocumentationMetrics =
+        metrics
+
+    private fun findValidatedDocumentation(version: String): PreparedDocumentation? =
+        documentationProvider.getDocumentationIfReady()?.get(version)
+            ?: when (documentationProvider.readiness) {
+                DocumentationReadiness.PREPARING -> documentationProvider.getRawDocumentation(version)
+                else -> documentationProvider.getDocumentation()[version]
             }
 
-            OpenApiLoader()
-                .loadOpenApiSchemes()
-                .mapValues { (version, rawDocs) ->
-                    pluginConfig
-                        .definitionConfiguration
-                        ?.let { DefinitionConfiguration().also { definition -> it.accept(version, definition) } }
-                        ?.applyConfigurationTo(
-                            jsonMapper = jsonMapper.value,
-                            content = rawDocs,
-                            prettyOutputEnabled = pluginConfig.prettyOutputEnabled
-                        )
-                        ?: rawDocs
-                }
+    private fun loadPrecomputedDiff(sourceVersion: String, targetVersion: String): ByteArray? {
+        val runtimeVersions = documentationEngine.getVersions()
+
+        return when {
+            // patches generated at compile time describe documentation that hasn't been changed at runtime
+            pluginConfig.definitionConfiguration != null -> null
+            sourceVersion in runtimeVersions || targetVersion in runtimeVersions -> null
+            else -> loader.loadVersionDiff(sourceVersion, targetVersion)
+        }
+    }
+
+    private fun createDocumentationWatcher(): OpenApiDirectoryWatcher {
+        val directory = pluginConfig.hotReloadDirectory
+            ?: OpenApiLoader.findClasspathDirectory()
+            ?: throw IllegalStateException("Hot reload requires external directory with documentation or exploded classpath")
+
+        return OpenApiDirectoryWatcher(directory) { fileName ->
+            when {
+                fileName == ".index" -> documentationProvider.reloadVersions()
+                fileName.startsWith("openapi-") && fileName.endsWith(".json") -> documentationProvider.reload(fileName.removePrefix("openapi-").removeSuffix(".json"))
+            }
         }
+    }
+
+    private fun prepareDocumentation(version: String, rawDocs: ByteArray): PreparedDocumentation {
+        val start = System.nanoTime()
+        val json = pluginConfig
+            .definitionConfiguration
+            ?.let { DefinitionConfiguration().also { definition -> it.accept(version, definition) } }
+            ?.applyConfigurationTo(
+                jsonMapper = jsonMapper,
+                content = rawDocs,
+                prettyOutputEnabled = pluginConfig.prettyOutputEnabled
+            )
+            // documentation generated with definition configured at compile time is served as it is
+            ?: rawDocs
+
+        val documentation = prepareFormats(documentationEngine.render(version, json))
+        metrics.recordPreparation(version, System.nanoTime() - start)
+        recordRetainedBytes(version, documentation)
+        return documentation
+    }
+
+    private fun recordRetainedBytes(version: String, documentation: PreparedDocumentation) {
+        metrics.removeRetainedBytes(version)
+
+        fun recordFormats(formats: Collection<PreparedFormat>, prefix: String) =
+            formats.forEach { format ->
+                val formatName = prefix + format.format.formatName
+                metrics.recordRetainedBytes(version, formatName, format.identity.content.size.toLong())
+                format.compressed.forEach { metrics.recordRetainedBytes(version, "$formatName+${it.encoding}", it.content.size.toLong()) }
+            }
+
+        recordFormats(documentation.formats.values, prefix = "")
+        documentation.machine?.let { recordFormats(it.formats.values, prefix = "${MachineReadableDocumentation.VARIANT_NAME}-") }
+    }
+
+    private fun prepareFormats(json: ByteArray): PreparedDocumentation =
+        PreparedDocumentation(
+            formats = prepareFormatsOf(json),
+            machine = when {
+                pluginConfig.machineVariantEnabled -> PreparedDocumentation(prepareFormatsOf(MachineReadableDocumentation.strip(json)))
+                else -> null
+            }
+        )
+
+    private fun prepareFormatsOf(json: ByteArray): Map<DocumentationFormat, PreparedFormat> {
+        val formats = linkedMapOf(DocumentationFormat.JSON to prepareFormat(json, DocumentationFormat.JSON))
+
+        if (pluginConfig.yamlOutputEnabled) {
+            formats[DocumentationFormat.YAML] = prepareFormat(json, DocumentationFormat.YAML)
+        }
+
+        if (pluginConfig.smileOutputEnabled) {
+            formats[DocumentationFormat.SMILE] = prepareFormat(json, DocumentationFormat.SMILE)
+        }
+
+        if (pluginConfig.cborOutputEnabled) {
+            formats[DocumentationFormat.CBOR] = prepareFormat(json, DocumentationFormat.CBOR)
+        }
+
+        return formats
+    }
+
+    private fun prepareFormat(json: ByteArray, format: DocumentationFormat): PreparedFormat =
+        PreparedFormat(DocumentationFormat.render(json, format), format, pluginConfig.compressors, pluginConfig.storage)
+
+    private fun DefinitionConfiguration.applyConfigurationTo(jsonMapper: ObjectMapper, content: ByteArray, prettyOutputEnabled: Boolean): ByteArray {
+        val transformer = StreamingDefinitionTransformer(jsonMapper, prettyOutputEnabled)
+
+        val processedContent = when (val definitionProcessor = definitionProcessor) {
+            // tree based processors require the whole document in memory anyway
+            null -> transformer.transform(this, content)
+            else -> definitionProcessor.process(createDocumentationTree(jsonMapper, content)).toByteArray(Charsets.UTF_8)
+        }
+
+        return streamingDefinitionProcessor
+            ?.let { transformer.process(processedContent, it) }
+            ?: processedContent
+    }
 
-    private fun DefinitionConfiguration.applyConfigurationTo(jsonMapper: ObjectMapper, content: String, prettyOutputEnabled: Boolean): String {
+    private fun DefinitionConfiguration.createDocumentationTree(jsonMapper: ObjectMapper, content: ByteArray): ObjectNode {
         val docsNode = jsonMapper.readTree(content) as ObjectNode
 
         //process OpenAPI "info"
@@ -65,9 +289,7 @@ open class OpenApiPlugin(userConfig: Consumer<OpenApiPluginConfiguration>) : Plu
         val securityMap = security?.globalSecurity?.map { mapOf(it.name to it.scopes.toTypedArray()) }
         docsNode.replace("security", jsonMapper.convertValue(securityMap, JsonNode::class.java))
 
-        return definitionProcessor
-            ?.process(docsNode)
-            ?: if (prettyOutputEnabled) docsNode.toPrettyString() else docsNode.toString()
+        return docsNode
     }
 
 }
\ No newline at end of file
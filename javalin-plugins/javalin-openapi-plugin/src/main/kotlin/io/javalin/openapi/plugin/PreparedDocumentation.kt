@@ -0,0 +1,114 @@
+package io.javalin.openapi.plugin
+
+import io.javalin.openapi.storage.ContentStorage
+import io.javalin.openapi.storage.HeapContentStorage
+import io.javalin.openapi.storage.JettyContentWriter
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.router.InternalRouter
+
+/** OpenApi documentation in a single format with all of its precomputed encodings */
+internal class PreparedFormat(
+    content: ByteArray,
+    val format: DocumentationFormat,
+    compressors: List<DocumentationCompressor> = emptyList(),
+    storage: ContentStorage = HEAP_STORAGE
+) {
+
+    val identity: PreparedResponse = PreparedResponse(
+        content = storage.store(content),
+        etag = PreparedResponse.createEntityTag(content),
+        contentType = format.contentType,
+        writer = JettyContentWriter
+    )
+
+    /** Precompressed variants of [identity] in order of server preference */
+    val compressed: List<PreparedResponse> = compressors.map {
+        PreparedResponse(
+            content = storage.store(it.compress(content)),
+            etag = identity.etag.dropLast(1) + "-" + it.encoding + "\"",
+            contentType = format.contentType,
+            encoding = it.encoding,
+            writer = JettyContentWriter
+        )
+    }
+
+    /** Selects the best representation for given Accept-Encoding header value */
+    fun select(acceptEncoding: String?): PreparedResponse {
+        if (acceptEncoding == null || compressed.isEmpty()) {
+            return identity
+        }
+
+        val acceptedEncodings = ContentNegotiation.parseQualityValues(acceptEncoding)
+        var selected = identity
+        var selectedQuality = 0.0
+
+        for (variant in compressed) {
+            val quality = ContentNegotiation.findEncodingQuality(acceptedEncodings, variant.encoding!!)
+
+            if (quality > selectedQuality) {
+                selected = variant
+                selectedQuality = quality
+            }
+        }
+
+        return selected
+    }
+
+    companion object {
+        private val HEAP_STORAGE = HeapContentStorage()
+    }
+
+}
+
+/** Version of OpenApi documentation with all of its prepared formats */
+internal class PreparedDocumentation(
+    val formats: Map<DocumentationFormat, PreparedFormat>,
+    /** Minified variant without prose and examples, if enabled */
+    val machine: PreparedDocumentation? = null
+) {
+
+    constructor(json: ByteArray) : this(mapOf(DocumentationFormat.JSON to PreparedFormat(json, DocumentationFormat.JSON)))
+
+    val json: PreparedFormat = formats.getValue(DocumentationFormat.JSON)
+
+    /** Graph of references between operations and components, built once on the first filtered request */
+    val referenceGraph: DocumentationReferenceGraph by lazy {
+        DocumentationReferenceGraph.parse(json.identity.content.toByteArray())
+    }
+
+    /** Roles of operations of this documentation, kept with it, so they are dropped together with replaced documentation */
+    @Volatile
+    private var operationRoles: OperationRoles? = null
+
+    /** Returns roles of operations, resolved on the first request filtered by roles, when all routes are registered */
+    fun getOperationRoles(internalRouter: InternalRouter?): OperationRoles =
+        operationRoles ?: OperationRoles.resolve(referenceGraph, internalRouter).also { operationRoles = it }
+
+    /** Compact JSON content with offsets of its values, prepared on the first request for a value referenced by JSON Pointer */
+    val pointerContent: JsonPointerContent by lazy {
+        JsonPointerContent.create(json.identity.content, json.identity.contentType)
+    }
+
+    /** Selects the best format for given Accept header value, JSON is used by default */
+    fun select(accept: String?): PreparedFormat {
+        if (accept == null || formats.size == 1) {
+            return json
+        }
+
+        val acceptedMediaTypes = ContentNegotiation.parseQualityValues(accept)
+        var selected = json
+        var selectedQuality = json.format.mediaTypes.maxOf { ContentNegotiation.findMediaTypeQuality(acceptedMediaTypes, it) }
+
+        for (preparedFormat in formats.values) {
+            val quality = preparedFormat.format.mediaTypes.maxOf { ContentNegotiation.findMediaTypeQuality(acceptedMediaTypes, it) }
+
+            if (quality > selectedQuality) {
+                selected = preparedFormat
+                selectedQuality = quality
+            }
+        }
+
+        return selected
+    }
+
+}
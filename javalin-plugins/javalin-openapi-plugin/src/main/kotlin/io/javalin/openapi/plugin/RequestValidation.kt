@@ -0,0 +1,465 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonProcessingException
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.core.SerializableString
+import com.fasterxml.jackson.core.util.JsonParserDelegate
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+import io.javalin.http.Context
+import io.javalin.http.ExceptionHandler
+import io.javalin.http.Handler
+import io.javalin.http.HttpStatus
+import io.javalin.openapi.validation.SchemaValidationException
+import io.javalin.openapi.validation.SchemaValidator
+import io.javalin.openapi.validation.SchemaValidatorCompiler
+import io.javalin.openapi.validation.StreamingSchemaValidator
+import io.javalin.openapi.validation.ValidationError
+import io.javalin.openapi.validation.ValidationPath
+import java.util.concurrent.atomic.AtomicReference
+
+/** Part of the request that is not valid according to the documentation of its operation */
+data class RequestValidationError(
+    /** Location of invalid value: `path`, `query`, `header`, `cookie` or `body` */
+    val location: String,
+    /** Name of invalid parameter, null for request body */
+    val name: String?,
+    /** JSON Pointer of invalid value within the parameter or request body, empty for the whole value */
+    val pointer: String,
+    /** Schema keyword that is not satisfied, e.g. `required`, `type` or `minLength` */
+    val keyword: String,
+    val message: String
+)
+
+/** Thrown by request validation, handled by OpenApi plugin with [status] response unless another exception handler is registered */
+class RequestValidationException @JvmOverloads constructor(
+    val errors: List<RequestValidationError>,
+    /** `400 Bad Request`, or `415 Unsupported Media Type` for bodies of media types not declared by the operation */
+    val status: HttpStatus = HttpStatus.BAD_REQUEST
+) : RuntimeException("Request is not valid: " + errors.joinToString { "${it.location}${it.name?.let { name -> " '$name'" } ?: ""}${it.pointer}: ${it.message}" })
+
+/**
+ * Thrown by token stream of [ValidatedRequestBody] for the first invalid value, handled by OpenApi plugin like [RequestValidationException].
+ * [SchemaValidationException]s of other documents, e.g. responses validated by the application, are not handled by the plugin.
+ */
+class RequestBodyValidationException internal constructor(
+    val error: RequestValidationError,
+    cause: SchemaValidationException
+) : JsonParseException(cause.processor as? JsonParser, cause.originalMessage, cause)
+
+/**
+ * Body of operation validated in streaming mode, see [RequestValidationConfiguration.withStreamingBody].
+ * The body is validated while the handler reads it, so it's never held in memory as a whole.
+ */
+class ValidatedRequestBody internal constructor(
+    private val context: Context,
+    private val validator: StreamingSchemaValidator
+) {
+
+    companion object {
+        private const val ATTRIBUTE = "javalin-openapi-validated-body"
+        private val defaultJsonMapper = ObjectMapper().findAndRegisterModules()
+
+        /**
+         * Returns body of the current request, available only for operations validated in streaming mode.
+         * [RequestValidationException] is thrown if the body is of media type not described by JSON schema, e.g. a form.
+         */
+        @JvmStatic
+        fun of(context: Context): ValidatedRequestBody =
+            when (val body = context.attribute<Any>(ATTRIBUTE)) {
+                is ValidatedRequestBody -> body
+                is RequestValidationException -> throw body
+                else -> throw IllegalStateException("Body of ${context.method()} ${context.endpointHandlerPath()} is not validated in streaming mode")
+            }
+
+        internal fun register(context: Context, body: ValidatedRequestBody) =
+            context.attribute(ATTRIBUTE, body)
+
+        internal fun registerUnsupported(context: Context, exception: RequestValidationException) =
+            context.attribute(ATTRIBUTE, exception)
+    }
+
+    /** Returns token stream of the body, [RequestBodyValidationException] is thrown by the first token that makes it invalid */
+    @JvmOverloads
+    fun parser(jsonFactory: JsonFactory = defaultJsonMapper.factory): JsonParser =
+        RequestBodyParser(validator.parser(jsonFactory.createParser(context.bodyInputStream())))
+
+    /** Reads body as typed object, [RequestValidationException] is thrown for the first violation */
+    @JvmOverloads
+    fun <T> read(type: Class<T>, jsonMapper: ObjectMapper = defaultJsonMapper): T =
+        try {
+            jsonMapper.readValue(parser(jsonMapper.factory), type)
+        } catch (exception: JsonProcessingException) {
+            throw RequestValidationException(listOf(toRequestValidationError(exception)))
+        }
+
+}
+
+/** Reports violations of request body as [RequestBodyValidationException], advancing shortcuts are wrapped one by one */
+private class RequestBodyParser(parser: JsonParser) : JsonParserDelegate(parser) {
+
+    override fun nextToken(): JsonToken? =
+        translate { delegate.nextToken() }
+
+    override fun nextValue(): JsonToken? =
+        translate { delegate.nextValue() }
+
+    override fun nextFieldName(): String? =
+        translate { delegate.nextFieldName() }
+
+    override fun nextFieldName(name: SerializableString): Boolean =
+        translate { delegate.nextFieldName(name) }
+
+    override fun nextTextValue(): String? =
+        translate { delegate.nextTextValue() }
+
+    override fun nextIntValue(defaultValue: Int): Int =
+        translate { delegate.nextIntValue(defaultValue) }
+
+    override fun nextLongValue(defaultValue: Long): Long =
+        translate { delegate.nextLongValue(defaultValue) }
+
+    override fun nextBooleanValue(): Boolean? =
+        translate { delegate.nextBooleanValue() }
+
+    override fun skipChildren(): JsonParser =
+        also { translate { delegate.skipChildren() } }
+
+    private inline fun <T> translate(read: () -> T): T =
+        try {
+            read()
+        } catch (exception: SchemaValidationException) {
+            throw RequestBodyValidationException(toRequestValidationError(exception), exception)
+        }
+
+}
+
+/** Finds validation error among causes of the given exception, other exceptions are reported as syntax errors */
+internal fun toRequestValidationError(exception: JsonProcessingException): RequestValidationError =
+    generateSequence<Throwable>(exception) { it.cause }
+        .filterIsInstance<SchemaValidationException>()
+        .firstOrNull()
+        ?.error
+        ?.let { RequestValidationError("body", null, it.pointer, it.keyword, it.message) }
+        ?: RequestValidationError("body", null, "", "syntax", exception.originalMessage)
+
+/** Validates requests against operations of the prepared documentation before they're handled */
+internal class RequestValidator(
+    private val configuration: RequestValidationConfiguration,
+    /** Supplies documentation of the validated version, null if it's not available yet */
+    private val documentation: () -> PreparedDocumentation?
+) : Handler {
+
+    private companion object {
+        val PATH_PARAMETER = Regex("<([^>]+)>")
+        val jsonNodeFactory: JsonNodeFactory = JsonNodeFactory.instance
+    }
+
+    private class CompiledParameter(
+        val name: String,
+        val location: String,
+        val required: Boolean,
+        /** Converts raw values to JSON according to the type of the parameter, returns null if they can't be converted */
+        val converter: (List<String>) -> JsonNode?,
+        val validator: SchemaValidator
+    )
+
+    private class CompiledOperation(
+        val parameters: Array<CompiledParameter>,
+        /** Validators of JSON request bodies keyed by media type */
+        val bodies: Map<String, SchemaValidator>,
+        /** Other media types of request body declared by the operation, e.g. forms, their bodies are not validated */
+        val otherMediaTypes: Set<String>,
+        /** Validators of JSON request bodies read by handler in streaming mode, null if bodies are validated up front */
+        val streamingBodies: Map<String, StreamingSchemaValidator>?,
+        val bodyRequired: Boolean
+    )
+
+    private class CompiledDocumentation(
+        /** ETag of the documentation, operations are compiled again when it changes */
+        val etag: String,
+        /** Operations keyed by path and method */
+        val operations: Map<String, Map<String, CompiledOperation>>
+    )
+
+    private val jsonMapper = ObjectMapper()
+    private val compiled = AtomicReference<CompiledDocumentation?>()
+
+    override fun handle(context: Context) {
+        val operation = findOperations()
+            ?.get(normalizePath(context.endpointHandlerPath()))
+            ?.get(context.method().name)
+            ?: return
+
+        val errors = ArrayList<RequestValidationError>(0)
+        operation.parameters.forEach { validateParameter(context, it, errors) }
+
+        when {
+            !operation.streamingBodies.isNullOrEmpty() -> registerStreamingBody(context, operation, operation.streamingBodies, errors)
+            operation.bodies.isNotEmpty() -> validateBody(context, operation, errors)
+        }
+
+        if (errors.isNotEmpty()) {
+            throw RequestValidationException(errors)
+        }
+    }
+
+    /** Compiles operations of the current documentation, if they're not compiled yet */
+    fun compile() {
+        findOperations()
+    }
+
+    private fun findOperations(): Map<String, Map<String, CompiledOperation>>? {
+        val currentDocumentation = documentation() ?: return null
+        val etag = currentDocumentation.json.identity.etag
+
+        compiled.get()
+            ?.takeIf { it.etag == etag }
+            ?.let { return it.operations }
+
+        return compile(currentDocumentation)
+            .also { compiled.set(it) }
+            .operations
+    }
+
+    private fun compile(documentation: PreparedDocumentation): CompiledDocumentation {
+        val document = jsonMapper.readTree(documentation.json.identity.content.toByteArray())
+        val compiler = SchemaValidatorCompiler(document)
+        val operations = HashMap<String, MutableMap<String, CompiledOperation>>()
+
+        document.path("paths").fields().forEach { (path, pathItem) ->
+            val pathItemParameters = pathItem.path("parameters").map { resolve(document, it) }
+
+            pathItem.fields().forEach { (method, operation) ->
+                if (method in DocumentationReferenceGraph.OPERATION_METHODS && configuration.isEnabled(method, path, operation.get("operationId")?.asText())) {
+                    val streaming = configuration.isStreaming(method, path, operation.get("operationId")?.asText())
+
+                    operations
+                        .computeIfAbsent(normalizePath(path)) { HashMap() }
+                        .put(method.uppercase(), compileOperation(compiler, document, pathItemParameters, operation, streaming))
+                }
+            }
+        }
+
+        return CompiledDocumentation(documentation.json.identity.etag, operations)
+    }
+
+    private fun compileOperation(compiler: SchemaValidatorCompiler, document: JsonNode, pathItemParameters: List<JsonNode>, operation: JsonNode, streaming: Boolean): CompiledOperation {
+        val operationParameters = operation.path("parameters").map { resolve(document, it) }
+
+        // parameters of operation override parameters of path item with the same name and location
+        val parameters = (operationParameters + pathItemParameters)
+            .distinctBy { it.path("in").asText() to it.path("name").asText() }
+            .filter { it.path("in").asText() in setOf("path", "query", "header", "cookie") }
+            .map { parameter ->
+                val schema = resolve(document, parameter.path("schema"))
+
+                CompiledParameter(
+                    name = parameter.path("name").asText(),
+                    location = parameter.path("in").asText(),
+                    required = parameter.path("required").asBoolean(),
+                    converter = createConverter(document, schema),
+                    validator = compiler.compile(schema)
+                )
+            }
+
+        val requestBody = resolve(document, operation.path("requestBody"))
+
+        val (jsonContent, otherContent) = requestBody.path("content").fields().asSequence()
+            .partition { (mediaType, _) -> isJson(mediaType) }
+        val bodySchemas = jsonContent.associate { (mediaType, content) -> normalizeMediaType(mediaType) to content.path("schema") }
+
+        return CompiledOperation(
+            parameters = parameters.toTypedArray(),
+            bodies = if (streaming) emptyMap() else bodySchemas.mapValues { (_, schema) -> compiler.compile(schema) },
+            otherMediaTypes = otherContent.mapTo(HashSet()) { (mediaType, _) -> normalizeMediaType(mediaType) },
+            streamingBodies = if (streaming) bodySchemas.mapValues { (_, schema) -> compiler.compileStreaming(schema) } else null,
+            bodyRequired = requestBody.path("required").asBoolean()
+        )
+    }
+
+    private fun validateParameter(context: Context, parameter: CompiledParameter, errors: MutableList<RequestValidationError>) {
+        val values = when (parameter.location) {
+            "path" -> listOfNotNull(context.pathParamMap()[parameter.name])
+            "query" -> context.queryParams(parameter.name)
+            "header" -> context.req().getHeaders(parameter.name)?.toList() ?: emptyList()
+            else -> listOfNotNull(context.cookie(parameter.name))
+        }
+
+        if (values.isEmpty()) {
+            if (parameter.required) {
+                errors.add(RequestValidationError(parameter.location, parameter.name, "", "required", "is required"))
+            }
+            return
+        }
+
+        val value = parameter.converter(values)
+
+        if (value == null) {
+            errors.add(RequestValidationError(parameter.location, parameter.name, "", "type", "has invalid type"))
+            return
+        }
+
+        collectErrors(parameter.validator, value, parameter.location, parameter.name, errors)
+    }
+
+    private fun validateBody(context: Context, operation: CompiledOperation, errors: MutableList<RequestValidationError>) {
+        if (context.contentLength() == 0) {
+            validateMissingBody(operation, errors)
+            return
+        }
+
+        // body is read only if it's described by JSON schema
+        val validator = findBodyValidator(context, operation, operation.bodies) ?: return
+        val body = context.bodyAsBytes()
+
+        if (body.isEmpty()) {
+            validateMissingBody(operation, errors)
+            return
+        }
+
+        val value = try {
+            jsonMapper.readTree(body)
+        } catch (exception: JsonProcessingException) {
+            errors.add(RequestValidationError("body", null, "", "syntax", exception.originalMessage))
+            return
+        }
+
+        collectErrors(validator, value, "body", null, errors)
+    }
+
+    private fun validateMissingBody(operation: CompiledOperation, errors: MutableList<RequestValidationError>) {
+        if (operation.bodyRequired) {
+            errors.add(RequestValidationError("body", null, "", "required", "is required"))
+        }
+    }
+
+    /**
+     * Selects validator of the body by its Content-Type, body without it is validated against the only JSON body of the operation.
+     * Returns null for bodies of other declared media types, they are not described by JSON schemas.
+     * Bodies of undeclared media types are rejected, so a client can't bypass validation by changing the header.
+     */
+    private fun <V : Any> findBodyValidator(context: Context, operation: CompiledOperation, validators: Map<String, V>): V? {
+        val mediaType = context.contentType()?.let { normalizeMediaType(it) }
+
+        return when {
+            mediaType == null && validators.size == 1 && operation.otherMediaTypes.isEmpty() -> validators.values.first()
+            mediaType != null && mediaType in validators -> validators[mediaType]
+            mediaType != null && operation.otherMediaTypes.any { matchesMediaType(it, mediaType) } -> null
+            else -> throw createUnsupportedMediaTypeException("must be one of ${(validators.keys + operation.otherMediaTypes).joinToString()}")
+        }
+    }
+
+    private fun createUnsupportedMediaTypeException(message: String): RequestValidationException =
+        RequestValidationException(
+            errors = listOf(RequestValidationError("body", null, "", "contentType", message)),
+            status = HttpStatus.UNSUPPORTED_MEDIA_TYPE
+        )
+
+    /** Streamed bodies are validated while handler reads them, so only their presence is checked up front */
+    private fun registerStreamingBody(context: Context, operation: CompiledOperation, validators: Map<String, StreamingSchemaValidator>, errors: MutableList<RequestValidationError>) {
+        if (context.contentLength() == 0) {
+            validateMissingBody(operation, errors)
+            return
+        }
+
+        when (val validator = findBodyValidator(context, operation, validators)) {
+            null -> ValidatedRequestBody.registerUnsupported(context, createUnsupportedMediaTypeException("must be one of ${validators.keys.joinToString()} to be read as JSON"))
+            else -> ValidatedRequestBody.register(context, ValidatedRequestBody(context, validator))
+        }
+    }
+
+    private fun collectErrors(validator: SchemaValidator, value: JsonNode, location: String, name: String?, errors: MutableList<RequestValidationError>) {
+        // valid requests are checked without allocations, errors are collected in the second pass only for invalid ones
+        if (validator.isValid(value)) {
+            return
+        }
+
+        val validationErrors = ArrayList<ValidationError>(0)
+        validator.validate(value, ValidationPath.ROOT, validationErrors)
+        validationErrors.mapTo(errors) { RequestValidationError(location, name, it.pointer, it.keyword, it.message) }
+    }
+
+    /** Creates converter specialized for the type of parameter, values of array parameters may be repeated or separated by commas */
+    private fun createConverter(document: JsonNode, schema: JsonNode): (List<String>) -> JsonNode? =
+        when (schema.path("type").asText()) {
+            "array" -> {
+                val itemConverter = createScalarConverter(resolve(document, schema.path("items")).path("type").asText())
+
+                converter@{ values ->
+                    val array = jsonNodeFactory.arrayNode()
+
+                    for (value in values) {
+                        for (item in value.split(',')) {
+                            array.add(itemConverter(item) ?: return@converter null)
+                        }
+                    }
+
+                    array
+                }
+            }
+            else -> createScalarConverter(schema.path("type").asText()).let { converter -> { values -> converter(values.first()) } }
+        }
+
+    private fun createScalarConverter(type: String): (String) -> JsonNode? =
+        when (type) {
+            "integer" -> { value -> value.toLongOrNull()?.let { jsonNodeFactory.numberNode(it) } ?: value.toBigIntegerOrNull()?.let { jsonNodeFactory.numberNode(it) } }
+            "number" -> { value -> value.toBigDecimalOrNull()?.let { jsonNodeFactory.numberNode(it) } }
+            "boolean" -> { value -> value.toBooleanStrictOrNull()?.let { jsonNodeFactory.booleanNode(it) } }
+            else -> { value -> jsonNodeFactory.textNode(value) }
+        }
+
+    private fun resolve(document: JsonNode, node: JsonNode): JsonNode =
+        node.get("\$ref")
+            ?.asText()
+            ?.takeIf { it.startsWith("#") }
+            ?.let { document.at(it.removePrefix("#")) }
+            ?: node
+
+    private fun isJson(mediaType: String): Boolean =
+        normalizeMediaType(mediaType).let { it == "application/json" || it.endsWith("+json") }
+
+    private fun normalizeMediaType(mediaType: String): String =
+        mediaType.substringBefore(';').trim().lowercase()
+
+    /** Declared media types may be ranges of all types or subtypes of a single type */
+    private fun matchesMediaType(declared: String, mediaType: String): Boolean =
+        when {
+            declared == mediaType || declared == "*/*" -> true
+            declared.endsWith("/*") -> mediaType.startsWith(declared.dropLast(1))
+            else -> false
+        }
+
+    /** Javalin routes may use `<name>` parameters, documentation always uses `{name}` */
+    private fun normalizePath(path: String): String =
+        path.replace(PATH_PARAMETER, "{$1}")
+
+}
+
+/** Responds to invalid requests with `application/problem+json` document listing all errors */
+internal class RequestValidationExceptionHandler : ExceptionHandler<RequestValidationException> {
+
+    private val jsonMapper = ObjectMapper()
+
+    /** Handles violations thrown by token streams of [ValidatedRequestBody] */
+    fun handle(exception: RequestBodyValidationException, context: Context) =
+        handle(RequestValidationException(listOf(exception.error)), context)
+
+    override fun handle(exception: RequestValidationException, context: Context) {
+        val problem = linkedMapOf(
+            "title" to "Request validation failed",
+            "status" to exception.status.code,
+            "errors" to exception.errors
+        )
+
+        context
+            .status(exception.status)
+            .contentType("application/problem+json")
+            .result(jsonMapper.writeValueAsBytes(problem))
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import com.fasterxml.jackson.databind.node.TextNode
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.storage.LruCache
+
+/** Documentation split into root document with paths and separate documents of each component, referenced with relative external references */
+internal class ShardedDocumentation(
+    val root: PreparedDocumentation,
+    /** Components keyed by `<type>/<name>`, e.g. `schemas/User` */
+    val shards: Map<String, PreparedDocumentation>,
+    /** Token added to references of shards, changed with each change of the source documentation */
+    val revision: String
+)
+
+/** Bounded LRU cache of sharded documentation, shards are prepared once per version of the source documentation */
+internal class ShardedDocumentationCache(
+    maxSize: Int,
+    private val prettyOutputEnabled: Boolean,
+    /** Path of documentation route, used to create references to shards relative to the root document */
+    documentationPath: String,
+    metrics: DocumentationMetrics,
+    private val rootPreparer: (json: ByteArray) -> PreparedDocumentation,
+    private val shardPreparer: (json: ByteArray) -> PreparedDocumentation
+) {
+
+    companion object {
+        const val REVISION_PARAMETER = "r"
+        private const val CACHE_NAME = "sharded-documentation"
+        private const val COMPONENTS_REFERENCE_PREFIX = "#/components/"
+        private const val SECURITY_SCHEMES = "securitySchemes"
+        private const val REVISION_LENGTH = 16
+    }
+
+    private data class Key(
+        val version: String,
+        /** ETag of the source documentation, so reloaded documentation never reuses stale shards */
+        val etag: String
+    )
+
+    private val componentsPath = documentationPath.trimEnd('/').substringAfterLast('/') + "/components"
+    private val jsonMapper = ObjectMapper()
+    private val cache = LruCache<Key, ShardedDocumentation>(CACHE_NAME, maxSize.toLong(), metrics)
+
+    fun getOrCreate(version: String, documentation: PreparedDocumentation): ShardedDocumentation =
+        cache.getOrCreate(Key(version, documentation.json.identity.etag)) { shard(version, documentation) }
+
+    private fun shard(version: String, documentation: PreparedDocumentation): ShardedDocumentation {
+        val document = jsonMapper.readTree(documentation.json.identity.content.toByteArray()) as ObjectNode
+        val revision = documentation.json.identity.etag.trim('"').take(REVISION_LENGTH)
+        val components = document.remove("components") as? ObjectNode
+        val shards = linkedMapOf<String, JsonNode>()
+
+        components?.fields()?.forEach { (type, typeComponents) ->
+            when (type) {
+                // security schemes are referenced by their names, not by references
+                SECURITY_SCHEMES -> document.putObject("components").set<JsonNode>(type, typeComponents)
+                else -> typeComponents.fields().forEach { (name, component) -> shards["$type/$name"] = component }
+            }
+        }
+
+        rewriteReferences(document) { type, name -> "$componentsPath/$version/$type/$name.json?$REVISION_PARAMETER=$revision" }
+        shards.values.forEach { component -> rewriteReferences(component) { type, name -> "../$type/$name.json?$REVISION_PARAMETER=$revision" } }
+
+        return ShardedDocumentation(
+            root = rootPreparer(write(document)),
+            shards = shards.mapValues { (_, component) -> shardPreparer(write(component)) },
+            revision = revision
+        )
+    }
+
+    /** Replaces local references to components, including discriminator mappings, with external references */
+    private fun rewriteReferences(node: JsonNode, externalReference: (type: String, name: String) -> String) {
+        fun rewrite(reference: String): String? {
+            if (!reference.startsWith(COMPONENTS_REFERENCE_PREFIX)) {
+                return null
+            }
+
+            val segments = reference.removePrefix(COMPONENTS_REFERENCE_PREFIX).split('/', limit = 3)
+
+            return when (segments.size) {
+                1 -> null
+                2 -> externalReference(segments[0], segments[1])
+                // pointer to a part of the component, e.g. its property
+                else -> externalReference(segments[0], segments[1]) + "#/" + segments[2]
+            }
+        }
+
+        when {
+            node.isObject -> (node as ObjectNode).fields().forEach { field ->
+                val (name, value) = field
+
+                when {
+                    name == "\$ref" && value.isTextual -> rewrite(value.asText())?.let { field.setValue(TextNode(it)) }
+                    name == "mapping" && value.isObject -> value.fields().forEach { mapping ->
+                        when {
+                            mapping.value.isTextual -> rewrite(mapping.value.asText())?.let { mapping.setValue(TextNode(it)) }
+                            else -> rewriteReferences(mapping.value, externalReference) // e.g. property named "mapping"
+                        }
+                    }
+                    else -> rewriteReferences(value, externalReference)
+                }
+            }
+            node.isArray -> node.forEach { rewriteReferences(it, externalReference) }
+        }
+    }
+
+    private fun write(node: JsonNode): ByteArray =
+        when {
+            prettyOutputEnabled -> jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(node)
+            else -> jsonMapper.writeValueAsBytes(node)
+        }
+
+}
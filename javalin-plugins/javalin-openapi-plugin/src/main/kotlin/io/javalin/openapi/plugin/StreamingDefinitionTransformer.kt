@@ -0,0 +1,157 @@
+package io.javalin.openapi.plugin
+
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.ByteArrayOutputStream
+
+/**
+ * Applies [DefinitionConfiguration] by copying JSON tokens of the generated document
+ * and splicing in only the replaced top-level members, so the whole document is never kept as a tree.
+ */
+internal class StreamingDefinitionTransformer(
+    private val jsonMapper: ObjectMapper,
+    private val prettyOutputEnabled: Boolean
+) {
+
+    fun transform(definition: DefinitionConfiguration, content: ByteArray): ByteArray =
+        process(content) { parser, generator -> definition.replaceMembers(parser, generator) }
+
+    /** Runs given processor over [content] and returns its output */
+    fun process(content: ByteArray, processor: StreamingDefinitionProcessor): ByteArray {
+        val output = ByteArrayOutputStream(content.size + content.size / 8)
+
+        jsonMapper.createParser(content).use { parser ->
+            jsonMapper.createGenerator(output).use { generator ->
+                if (prettyOutputEnabled) {
+                    generator.useDefaultPrettyPrinter()
+                }
+                processor.process(parser, generator)
+            }
+        }
+
+        return output.toByteArray()
+    }
+
+    private fun DefinitionConfiguration.replaceMembers(parser: JsonParser, generator: JsonGenerator) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw IllegalArgumentException("OpenApi documentation has to be a JSON object")
+        }
+
+        var infoWritten = false
+        var serversWritten = false
+        var componentsWritten = false
+        var securityWritten = false
+
+        generator.writeStartObject()
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName()
+            parser.nextToken()
+
+            when (name) {
+                "info" -> {
+                    writeInfo(parser, generator)
+                    infoWritten = true
+                }
+                "servers" -> {
+                    parser.skipChildren()
+                    generator.writeFieldName(name)
+                    jsonMapper.writeValue(generator, servers)
+                    serversWritten = true
+                }
+                "components" -> {
+                    writeComponents(parser, generator)
+                    componentsWritten = true
+                }
+                "security" -> {
+                    parser.skipChildren()
+                    writeGlobalSecurity(generator)
+                    securityWritten = true
+                }
+                else -> {
+                    generator.writeFieldName(name)
+                    generator.copyCurrentStructure(parser)
+                }
+            }
+        }
+
+        if (!infoWritten && info != null) {
+            generator.writeFieldName("info")
+            jsonMapper.writeValue(generator, info)
+        }
+        if (!serversWritten) {
+            generator.writeFieldName("servers")
+            jsonMapper.writeValue(generator, servers)
+        }
+        if (!componentsWritten) {
+            generator.writeObjectFieldStart("components")
+            writeSecuritySchemes(generator)
+            generator.writeEndObject()
+        }
+        if (!securityWritten) {
+            writeGlobalSecurity(generator)
+        }
+
+        generator.writeEndObject()
+    }
+
+    private fun DefinitionConfiguration.writeInfo(parser: JsonParser, generator: JsonGenerator) {
+        generator.writeFieldName("info")
+
+        when (val info = info) {
+            null -> generator.copyCurrentStructure(parser)
+            else -> {
+                val currentInfo = jsonMapper.readTree<JsonNode>(parser)
+                val updatedInfo = jsonMapper.readerForUpdating(currentInfo).readValue<JsonNode>(jsonMapper.valueToTree<JsonNode>(info))
+                jsonMapper.writeTree(generator, updatedInfo)
+            }
+        }
+    }
+
+    private fun DefinitionConfiguration.writeComponents(parser: JsonParser, generator: JsonGenerator) {
+        generator.writeObjectFieldStart("components")
+
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren()
+            writeSecuritySchemes(generator)
+            generator.writeEndObject()
+            return
+        }
+
+        var securitySchemesWritten = false
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName()
+            parser.nextToken()
+
+            if (name == "securitySchemes") {
+                parser.skipChildren()
+                writeSecuritySchemes(generator)
+                securitySchemesWritten = true
+            } else {
+                generator.writeFieldName(name)
+                generator.copyCurrentStructure(parser)
+            }
+        }
+
+        if (!securitySchemesWritten) {
+            writeSecuritySchemes(generator)
+        }
+
+        generator.writeEndObject()
+    }
+
+    private fun DefinitionConfiguration.writeSecuritySchemes(generator: JsonGenerator) {
+        generator.writeFieldName("securitySchemes")
+        jsonMapper.writeValue(generator, security?.securitySchemes ?: emptyMap<String, Any>())
+    }
+
+    private fun DefinitionConfiguration.writeGlobalSecurity(generator: JsonGenerator) {
+        generator.writeFieldName("security")
+        jsonMapper.writeValue(generator, security?.globalSecurity?.map { mapOf(it.name to it.scopes.toTypedArray()) })
+    }
+
+}
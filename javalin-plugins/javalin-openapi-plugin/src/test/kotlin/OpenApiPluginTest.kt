@@ -1,9 +1,48 @@
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
 import io.javalin.Javalin
+import io.javalin.openapi.HttpMethod
+import io.javalin.openapi.JsonSchema
 import io.javalin.openapi.OpenApi
+import io.javalin.openapi.OpenApiContent
+import io.javalin.openapi.OpenApiLoader
+import io.javalin.openapi.OpenApiParam
+import io.javalin.openapi.OpenApiRequestBody
+import io.javalin.openapi.OpenApiResponse
+import io.javalin.openapi.data.OpenApiDocumentation
+import io.javalin.openapi.data.OpenApiDocumentationEngine
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.plugin.DocumentationReadiness
+import io.javalin.openapi.plugin.JsonPointerIndex
+import io.javalin.openapi.plugin.JsonSchemaPlugin
+import io.javalin.openapi.plugin.MachineReadableDocumentation
 import io.javalin.openapi.plugin.OpenApiPlugin
+import io.javalin.openapi.plugin.ValidatedRequestBody
+import io.javalin.openapi.storage.DirectContentStorage
+import io.javalin.openapi.storage.LruCache
+import io.javalin.openapi.storage.MappedFileContentStorage
+import io.javalin.openapi.validation.SchemaValidationException
+import io.javalin.openapi.validation.SchemaValidatorCompiler
+import io.javalin.security.RouteRole
 import kong.unirest.Unirest
+import net.javacrumbs.jsonunit.assertj.assertThatJson
+import net.javacrumbs.jsonunit.assertj.JsonAssertions.json
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.net.URI
+import java.net.URLClassLoader
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse.BodyHandlers
+import java.nio.file.Path
+import java.util.zip.GZIPInputStream
+import kotlin.io.path.createDirectories
+import kotlin.io.path.listDirectoryEntries
+import kotlin.io.path.writeText
 
 class OpenApiPluginTest {
 
@@ -12,6 +51,16 @@ class OpenApiPluginTest {
     )
     private object OpenApiTest
 
+    data class Customer(val name: String)
+    data class Invoice(val id: String, val customer: Customer)
+
+    @OpenApi(
+        path = "/billing",
+        tags = ["billing"],
+        responses = [OpenApiResponse(status = "200", content = [OpenApiContent(from = Invoice::class)])]
+    )
+    private object BillingOpenApiTest
+
     @Test
     fun `should support schema modifications in definition configuration`() {
         val app =
@@ -65,4 +114,883 @@ class OpenApiPluginTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `should support conditional requests`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin {})
+        }
+
+        try {
+            val response = Unirest.get("http://localhost:${app.port()}/openapi").asString()
+            val etag = response.headers.getFirst("ETag")
+            assertThat(response.status).isEqualTo(200)
+            assertThat(etag).isNotBlank
+
+            val notModifiedResponse = Unirest.get("http://localhost:${app.port()}/openapi")
+                .header("If-None-Match", etag)
+                .asString()
+            assertThat(notModifiedResponse.status).isEqualTo(304)
+            assertThat(notModifiedResponse.body).isNullOrEmpty()
+
+            val headResponse = Unirest.head("http://localhost:${app.port()}/openapi").asEmpty()
+            assertThat(headResponse.status).isEqualTo(200)
+            assertThat(headResponse.headers.getFirst("ETag")).isEqualTo(etag)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve precompressed documentation`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin {})
+        }
+
+        try {
+            val request = HttpRequest.newBuilder(URI.create("http://localhost:${app.port()}/openapi"))
+                .header("Accept-Encoding", "br;q=0.5, gzip")
+                .build()
+
+            val response = HttpClient.newHttpClient().send(request, BodyHandlers.ofByteArray())
+            assertThat(response.headers().firstValue("Content-Encoding")).hasValue("gzip")
+            assertThat(response.headers().firstValue("Vary")).hasValue("Accept-Encoding")
+
+            val decompressed = GZIPInputStream(response.body().inputStream()).use { it.readAllBytes().decodeToString() }
+            assertThat(decompressed).contains(""""openapi"""")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should prepare documentation eagerly`() {
+        val openApiPlugin = OpenApiPlugin { it.withEagerPreparation(parallelism = 2) }
+
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(openApiPlugin)
+        }
+
+        try {
+            val deadline = System.currentTimeMillis() + 10_000
+
+            while (openApiPlugin.readiness() != DocumentationReadiness.READY && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10)
+            }
+
+            assertThat(openApiPlugin.readiness()).isEqualTo(DocumentationReadiness.READY)
+
+            val response = Unirest.get("http://localhost:${app.port()}/openapi").asString()
+            assertThat(response.status).isEqualTo(200)
+            assertThat(response.body).contains(""""openapi"""")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should expose cause of failed eager preparation`() {
+        val openApiPlugin = OpenApiPlugin {
+            it
+                .withEagerPreparation(parallelism = 2)
+                .withDefinitionConfiguration { _, _ -> throw IllegalStateException("Broken definition configuration") }
+        }
+
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(openApiPlugin)
+        }
+
+        try {
+            val deadline = System.currentTimeMillis() + 10_000
+
+            while (openApiPlugin.readiness() != DocumentationReadiness.FAILED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10)
+            }
+
+            assertThat(openApiPlugin.readiness()).isEqualTo(DocumentationReadiness.FAILED)
+            assertThat(openApiPlugin.readinessFailure()).hasMessageContaining("Broken definition configuration")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should support streaming definition processor`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+
+            config.registerPlugin(
+                OpenApiPlugin { openApiConfig ->
+                    openApiConfig.withDefinitionConfiguration { _, def ->
+                        def
+                            .withServer { it.url("https://example.com") }
+                            .withStreamingDefinitionProcessor { parser, generator ->
+                                parser.nextToken()
+                                generator.writeStartObject()
+
+                                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                    generator.writeFieldName(parser.currentName())
+                                    parser.nextToken()
+                                    generator.copyCurrentStructure(parser)
+                                }
+
+                                generator.writeBooleanField("x-streamed", true)
+                                generator.writeEndObject()
+                            }
+                    }
+                }
+            )
+        }
+
+        try {
+            val response = Unirest.get("http://localhost:${app.port()}/openapi")
+                .asString()
+                .body
+
+            assertThatJson(response).inPath("$.servers[0].url").isEqualTo("https://example.com")
+            assertThatJson(response).inPath("$['x-streamed']").isEqualTo(true)
+            assertThatJson(response).inPath("$.paths['/test']").isObject
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should reload changed documentation`(@TempDir directory: Path) {
+        directory.resolve(".index").writeText("openapi-v1.json")
+        directory.resolve("openapi-v1.json").writeText("""{ "openapi": "3.0.3", "info": { "title": "Before" } }""")
+
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.withHotReload(directory) })
+        }
+
+        try {
+            val url = "http://localhost:${app.port()}/openapi?v=v1"
+            assertThat(Unirest.get(url).asString().body).contains("Before")
+
+            directory.resolve("openapi-v1.json").writeText("""{ "openapi": "3.0.3", "info": { "title": "After" } }""")
+            val deadline = System.currentTimeMillis() + 10_000
+
+            while (!Unirest.get(url).asString().body.contains("After") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50)
+            }
+
+            assertThat(Unirest.get(url).asString().body).contains("After")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve json patch between versions`(@TempDir directory: Path) {
+        directory.resolve(".index").writeText("openapi-v1.json\nopenapi-v2.json")
+        directory.resolve("openapi-v1.json").writeText("""{ "openapi": "3.0.3", "paths": { "/users/{id}": { "get": {} }, "/legacy": { "get": {} } } }""")
+        directory.resolve("openapi-v2.json").writeText("""{ "openapi": "3.0.3", "paths": { "/users/{id}": { "get": {}, "delete": {} }, "/orders": { "get": {} } } }""")
+
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.hotReloadDirectory = directory })
+        }
+
+        try {
+            val response = Unirest.get("http://localhost:${app.port()}/openapi?v=v2&diffFrom=v1").asString()
+            assertThat(response.headers.getFirst("Content-Type")).isEqualTo("application/json-patch+json")
+            assertThatJson(response.body).isArray.containsExactlyInAnyOrder(
+                json("""{ "op": "add", "path": "/paths/~1users~1{id}/delete", "value": {} }"""),
+                json("""{ "op": "remove", "path": "/paths/~1legacy" }"""),
+                json("""{ "op": "add", "path": "/paths/~1orders", "value": { "get": {} } }""")
+            )
+
+            val etag = response.headers.getFirst("ETag")
+            assertThat(Unirest.get("http://localhost:${app.port()}/openapi?v=v2&diffFrom=v1").header("If-None-Match", etag).asString().status).isEqualTo(304)
+            assertThat(Unirest.get("http://localhost:${app.port()}/openapi?v=v2&diffFrom=v0").asString().status).isEqualTo(404)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve components as separate documents`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.withShardedComponents() })
+        }
+
+        try {
+            val root = Unirest.get("http://localhost:${app.port()}/openapi").asString().body
+            assertThatJson(root).isObject.doesNotContainKey("components")
+
+            val invoiceReference = ObjectMapper().readTree(root).at("/paths/~1billing/get/responses/200/content/application~1json/schema/\$ref").asText()
+            assertThat(invoiceReference).startsWith("openapi/components/default/schemas/Invoice.json?r=")
+
+            val invoice = Unirest.get("http://localhost:${app.port()}/$invoiceReference").asString()
+            assertThat(invoice.headers.getFirst("Cache-Control")).isEqualTo("public, max-age=31536000, immutable")
+            assertThatJson(invoice.body).inPath("$.properties.customer.\$ref").isString.startsWith("../schemas/Customer.json?r=")
+
+            val bundle = Unirest.get("http://localhost:${app.port()}/openapi?bundle=true").asString().body
+            assertThatJson(bundle).inPath("$.components.schemas").isObject.containsKeys("Invoice", "Customer")
+            assertThat(Unirest.get("http://localhost:${app.port()}/openapi/components/default/schemas/Unknown.json").asString().status).isEqualTo(404)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve machine readable variant`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.withMachineVariant() })
+        }
+
+        try {
+            val human = Unirest.get("http://localhost:${app.port()}/openapi").asString()
+            val machine = Unirest.get("http://localhost:${app.port()}/openapi?variant=machine").asString()
+            assertThat(machine.body).doesNotContain("\n").hasSizeLessThan(human.body.length)
+            assertThat(machine.headers.getFirst("ETag")).isNotEqualTo(human.headers.getFirst("ETag"))
+            assertThat(machine.headers.getFirst("Vary")).contains("Accept")
+            assertThatJson(machine.body).inPath("$.paths['/billing'].get.responses.200.description").isEqualTo("")
+
+            val profile = Unirest.get("http://localhost:${app.port()}/openapi").header("Accept", "application/json; profile=\"machine\"").asString()
+            assertThat(profile.body).isEqualTo(machine.body)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should strip only prose keywords from machine readable variant`() {
+        val documentation = """
+            {
+              "info": { "title": "Api", "description": "About" },
+              "paths": { "/users": { "get": { "summary": "List", "responses": { "200": { "description": "OK" } } } } },
+              "components": { "schemas": { "User": { "description": "User", "properties": { "description": { "type": "string", "example": "Admin" } }, "default": { "description": "None" } } } }
+            }
+        """.trimIndent()
+
+        assertThatJson(MachineReadableDocumentation.strip(documentation.toByteArray()).decodeToString()).isEqualTo("""
+            {
+              "info": { "title": "Api" },
+              "paths": { "/users": { "get": { "responses": { "200": { "description": "" } } } } },
+              "components": { "schemas": { "User": { "properties": { "description": { "type": "string" } }, "default": { "description": "None" } } } }
+            }
+        """)
+    }
+
+    @Test
+    fun `should serve values referenced by json pointer`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin {})
+        }
+
+        try {
+            val customer = Unirest.get("http://localhost:${app.port()}/openapi")
+                .queryString("pointer", "/components/schemas/Customer")
+                .asString()
+
+            assertThat(customer.headers.getFirst("Content-Type")).startsWith("application/json")
+            assertThatJson(customer.body).inPath("$.properties.name.type").isEqualTo("string")
+
+            val reference = Unirest.get("http://localhost:${app.port()}/openapi")
+                .queryString("pointer", "#/components/schemas/Invoice/properties/customer/\$ref")
+                .asString()
+
+            assertThat(reference.body).isEqualTo("\"#/components/schemas/Customer\"")
+            assertThat(Unirest.get("http://localhost:${app.port()}/openapi").queryString("pointer", "/components/schemas/Unknown").asString().status).isEqualTo(404)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should index values of json document`() {
+        val json = """{ "paths": { "/a/b": { "get": { "tags": [ "x", "y" ], "deprecated": true } } }, "a": { "b": { "c": { "d": { "e": [ 1, 20, { "f": 300 } ] } } } }, "n": -1.5e3 }""".toByteArray()
+        val index = JsonPointerIndex.create(json)
+
+        fun find(pointer: String): String? =
+            index.find(pointer)?.let { String(json, it.offset, it.length) }
+
+        assertThat(find("")).isEqualTo(String(json))
+        assertThat(find("/paths/~1a~1b/get/tags")).isEqualTo("""[ "x", "y" ]""")
+        assertThat(find("/paths/~1a~1b/get/tags/1")).isEqualTo("\"y\"")
+        assertThat(find("/paths/~1a~1b/get/deprecated")).isEqualTo("true")
+        assertThat(find("/n")).isEqualTo("-1.5e3")
+        assertThat(find("/a/b/c/d/e/1")).isEqualTo("20")
+        assertThat(find("/a/b/c/d/e/2/f")).isEqualTo("300")
+        assertThat(find("/a/b/c/d/e/3")).isNull()
+        assertThat(find("/a/b/c/d/e/01")).isNull()
+        assertThat(find("/a/b/x")).isNull()
+        assertThat(find("a")).isNull()
+    }
+
+    @Test
+    fun `should index values of minified json document`() {
+        val json = JsonPointerIndex.minify("""{ "paths": { "/a~b": { "tags": [ "x", "y" ] } }, "empty": { } }""".byteInputStream())
+        val index = JsonPointerIndex.create(json)
+
+        fun find(pointer: String): String? =
+            index.find(pointer)?.let { String(json, it.offset, it.length) }
+
+        assertThat(String(json)).isEqualTo("""{"paths":{"/a~b":{"tags":["x","y"]}},"empty":{}}""")
+        assertThat(find("#/paths/~1a~0b")).isEqualTo("""{"tags":["x","y"]}""")
+        assertThat(find("/paths/~1a~0b/tags/0")).isEqualTo("\"x\"")
+        assertThat(find("/empty")).isEqualTo("{}")
+        assertThat(find("/empty/x")).isNull()
+    }
+
+    @Test
+    fun `should serve yaml documentation`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.withYamlOutput() })
+        }
+
+        try {
+            val negotiatedResponse = Unirest.get("http://localhost:${app.port()}/openapi")
+                .header("Accept", "application/yaml")
+                .asString()
+
+            assertThat(negotiatedResponse.headers.getFirst("Content-Type")).startsWith("application/yaml")
+            assertThat(negotiatedResponse.body).contains("openapi: \"3.0.3\"")
+
+            val formatResponse = Unirest.get("http://localhost:${app.port()}/openapi?format=yaml")
+                .asString()
+
+            assertThat(formatResponse.body).isEqualTo(negotiatedResponse.body)
+
+            val jsonResponse = Unirest.get("http://localhost:${app.port()}/openapi")
+                .asString()
+
+            assertThat(jsonResponse.headers.getFirst("Content-Type")).startsWith("application/json")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve binary documentation`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.withSmileOutput().withCborOutput() })
+        }
+
+        try {
+            val json = ObjectMapper().readTree(Unirest.get("http://localhost:${app.port()}/openapi").asString().body)
+
+            listOf("application/x-jackson-smile" to ObjectMapper(SmileFactory()), "application/cbor" to ObjectMapper(CBORFactory())).forEach { (contentType, mapper) ->
+                val response = Unirest.get("http://localhost:${app.port()}/openapi")
+                    .header("Accept", contentType)
+                    .header("Accept-Encoding", "identity")
+                    .asBytes()
+
+                assertThat(response.headers.getFirst("Content-Type")).startsWith(contentType)
+                assertThat(mapper.readTree(response.body)).isEqualTo(json)
+            }
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should render json documentation without yaml dataformat`() {
+        // only the plugin, jackson-core, required binary dataformats and Kotlin, so classes of YAML dataformat cannot be found
+        val classpath = listOf(OpenApiPlugin::class.java, JsonToken::class.java, SmileFactory::class.java, CBORFactory::class.java, Unit::class.java)
+            .map { it.protectionDomain.codeSource.location }
+            .toTypedArray()
+
+        URLClassLoader(classpath, ClassLoader.getPlatformClassLoader()).use { classLoader ->
+            assertThatThrownBy { classLoader.loadClass("com.fasterxml.jackson.dataformat.yaml.YAMLFactory") }
+                .isInstanceOf(ClassNotFoundException::class.java)
+
+            val formatClass = classLoader.loadClass("io.javalin.openapi.plugin.DocumentationFormat")
+            val companion = formatClass.getField("Companion").get(null)
+            val render = companion.javaClass.getMethod("render", ByteArray::class.java, formatClass)
+            val json = formatClass.enumConstants.first { (it as Enum<*>).name == "JSON" }
+            val documentation = """{"openapi":"3.0.3"}""".toByteArray()
+
+            assertThat(render.invoke(companion, documentation, json) as ByteArray).isEqualTo(documentation)
+        }
+    }
+
+    @Test
+    fun `should serve documentation filtered by tags`() {
+        val openApiPlugin = OpenApiPlugin {}
+
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(openApiPlugin)
+        }
+
+        try {
+            val url = "http://localhost:${app.port()}/openapi?tags=billing"
+            val response = Unirest.get(url).asString().body
+
+            assertThatJson(response).inPath("$.paths").isObject.containsOnlyKeys("/billing")
+            assertThatJson(response).inPath("$.components.schemas").isObject.containsOnlyKeys("Invoice", "Customer")
+            assertThat(Unirest.get(url).asString().body).isEqualTo(response)
+
+            val emptyResponse = Unirest.get("http://localhost:${app.port()}/openapi?pathPrefix=/unknown").asString().body
+            assertThatJson(emptyResponse).inPath("$.paths").isObject.isEmpty()
+            assertThatJson(emptyResponse).inPath("$.components.schemas").isObject.isEmpty()
+
+            val statistics = openApiPlugin.filteredDocumentationStatistics()
+            assertThat(statistics.hits).isEqualTo(1)
+            assertThat(statistics.misses).isEqualTo(2)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should evict least recently used values over the weight limit`() {
+        val metrics = DocumentationMetrics("openapi")
+        val cache = LruCache<String, String>("test", maxWeight = 5, metrics = metrics) { it.length.toLong() }
+
+        cache.put("a", "aa")
+        cache.put("b", "bb")
+        assertThat(cache.get("a")).isEqualTo("aa")
+        cache.put("c", "cc")
+
+        assertThat(cache.get("b")).isNull()
+        assertThat(cache.getOrCreate("a") { "other" }).isEqualTo("aa")
+        assertThat(cache.weight).isEqualTo(4)
+        assertThat(metrics.getCacheStatistics("test").hits).isEqualTo(2)
+        assertThat(metrics.getCacheStatistics("test").misses).isEqualTo(1)
+    }
+
+    private enum class TestRole : RouteRole {
+        ADMIN
+    }
+
+    @Test
+    fun `should serve documentation filtered by roles`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.router.mount { it.get("/billing", { ctx -> ctx.result("Invoices") }, TestRole.ADMIN) }
+
+            config.registerPlugin(
+                OpenApiPlugin {
+                    it.withRoleFilteredViews { ctx ->
+                        when (ctx.header("X-Role")) {
+                            "admin" -> setOf(TestRole.ADMIN)
+                            else -> emptySet()
+                        }
+                    }
+                }
+            )
+        }
+
+        try {
+            val anonymousResponse = Unirest.get("http://localhost:${app.port()}/openapi").asString().body
+            assertThatJson(anonymousResponse).inPath("$.paths").isObject.containsOnlyKeys("/test")
+
+            val adminResponse = Unirest.get("http://localhost:${app.port()}/openapi")
+                .header("X-Role", "admin")
+                .asString()
+                .body
+            assertThatJson(adminResponse).inPath("$.paths").isObject.containsOnlyKeys("/billing", "/test")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve documentation from direct storage`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin { it.withStorage(DirectContentStorage()) })
+        }
+
+        try {
+            val response = Unirest.get("http://localhost:${app.port()}/openapi").asString()
+            assertThat(response.status).isEqualTo(200)
+            assertThat(response.headers.getFirst("Content-Length")).isEqualTo(response.body.toByteArray().size.toString())
+            assertThatJson(response.body).inPath("$.paths").isObject.containsKey("/test")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should not keep files of memory mapped storage`(@TempDir directory: Path) {
+        val content = MappedFileContentStorage(directory).store("""{"openapi":"3.0.3"}""".toByteArray())
+
+        assertThat(content.toByteArray().decodeToString()).isEqualTo("""{"openapi":"3.0.3"}""")
+        assertThat(directory.listDirectoryEntries()).isEmpty()
+    }
+
+    @Test
+    fun `should record statistics of served documentation`() {
+        val plugin = OpenApiPlugin { it.withStatisticsEndpoint("/openapi-statistics") }
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(plugin)
+        }
+
+        try {
+            Unirest.get("http://localhost:${app.port()}/openapi").asString()
+            Unirest.get("http://localhost:${app.port()}/openapi?v=unknown").asString()
+
+            val snapshot = plugin.getMetrics().snapshot()
+            assertThat(snapshot.preparations).isNotEmpty
+            assertThat(snapshot.retainedBytes.map { it.variant }).contains("json", "json+gzip")
+            assertThat(snapshot.requests.sumOf { it.count }).isEqualTo(2)
+
+            val statistics = Unirest.get("http://localhost:${app.port()}/openapi-statistics").asString().body
+            assertThatJson(statistics).inPath("$.plugin").isEqualTo("openapi")
+            assertThatJson(statistics).inPath("$.requests").isArray.isNotEmpty
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should aggregate documentation of all modules on the classpath`(@TempDir directory: Path) {
+        fun createModule(name: String, documentation: String): Path =
+            directory.resolve(name).resolve("openapi-plugin")
+                .also { it.createDirectories() }
+                .also { it.resolve(".index").writeText("openapi-default.json") }
+                .also { it.resolve("openapi-default.json").writeText(documentation) }
+                .parent
+
+        val customer = """{ "type": "object", "properties": { "name": { "type": "string" } } }"""
+        val billing = createModule("billing", """{ "openapi": "3.0.3", "paths": { "/billing": { "get": {} } }, "components": { "schemas": { "Customer": $customer } } }""")
+        val customers = createModule("customers", """{ "openapi": "3.0.3", "paths": { "/customers": { "get": {} } }, "components": { "schemas": { "Customer": $customer } } }""")
+        val conflicting = createModule("conflicting", """{ "openapi": "3.0.3", "paths": {}, "components": { "schemas": { "Customer": { "type": "string" } } } }""")
+
+        URLClassLoader(arrayOf(billing.toUri().toURL(), customers.toUri().toURL()), null).use { classLoader ->
+            val loader = OpenApiLoader(classLoader = classLoader)
+            assertThat(loader.loadVersions()).containsExactly("default")
+
+            val documentation = loader.loadVersion("default")
+            assertThatJson(documentation).inPath("$.paths").isObject.containsOnlyKeys("/billing", "/customers")
+            assertThatJson(documentation).inPath("$.components.schemas").isObject.containsOnlyKeys("Customer")
+        }
+
+        URLClassLoader(arrayOf(billing.toUri().toURL(), conflicting.toUri().toURL()), null).use { classLoader ->
+            assertThatThrownBy { OpenApiLoader(classLoader = classLoader).loadVersion("default") }
+                .hasMessageContaining("Component schemas/Customer")
+        }
+    }
+
+    data class Refund(val invoice: Invoice, val reason: String?)
+
+    @Test
+    fun `should document routes registered at runtime`() {
+        val plugin = OpenApiPlugin {
+            it.withDocumentation(
+                OpenApiDocumentation()
+                    .path("/refunds")
+                    .responses(OpenApiResponse(status = "200", content = arrayOf(OpenApiContent(from = Array<Refund>::class))))
+            )
+        }
+
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(plugin)
+        }
+
+        try {
+            val response = Unirest.get("http://localhost:${app.port()}/openapi").asString().body
+            assertThatJson(response).inPath("$.paths").isObject.containsKeys("/test", "/billing", "/refunds")
+            assertThatJson(response).inPath("$.paths['/refunds'].get.responses.200.content['application/json'].schema.items.\$ref").isEqualTo("#/components/schemas/Refund")
+            assertThatJson(response).inPath("$.components.schemas.Refund.required").isArray.containsExactly("invoice")
+
+            plugin.addDocumentation(
+                OpenApiDocumentation()
+                    .path("/refunds/{id}")
+                    .methods(HttpMethod.DELETE)
+                    .pathParams(OpenApiParam(name = "id", type = Long::class, required = true))
+            )
+
+            val updatedResponse = Unirest.get("http://localhost:${app.port()}/openapi").asString().body
+            assertThatJson(updatedResponse).inPath("$.paths").isObject.containsKeys("/test", "/billing", "/refunds", "/refunds/{id}")
+            assertThatJson(updatedResponse).inPath("$.paths['/refunds/{id}'].delete.parameters[0].schema.format").isEqualTo("int64")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should document form params of runtime routes as request body`() {
+        val engine = OpenApiDocumentationEngine()
+        engine.register(
+            OpenApiDocumentation()
+                .path("/avatars")
+                .methods(HttpMethod.POST)
+                .formParams(OpenApiParam(name = "name", type = String::class, required = true), OpenApiParam(name = "avatar", type = ByteArray::class))
+        )
+        engine.register(
+            OpenApiDocumentation()
+                .path("/nicknames")
+                .methods(HttpMethod.POST)
+                .formParams(OpenApiParam(name = "nickname", type = String::class))
+        )
+
+        val document = String(engine.render("default", "{}".toByteArray()))
+        assertThatJson(document).inPath("$.paths['/avatars'].post.parameters").isArray.isEmpty()
+        assertThatJson(document).inPath("$.paths['/avatars'].post.requestBody.required").isEqualTo(true)
+        assertThatJson(document).inPath("$.paths['/avatars'].post.requestBody.content['multipart/form-data'].schema.required").isArray.containsExactly("name")
+        assertThatJson(document).inPath("$.paths['/avatars'].post.requestBody.content['multipart/form-data'].schema.properties.avatar.format").isEqualTo("binary")
+        assertThatJson(document).inPath("$.paths['/nicknames'].post.requestBody.required").isEqualTo(false)
+        assertThatJson(document).inPath("$.paths['/nicknames'].post.requestBody.content['application/x-www-form-urlencoded'].schema.properties.nickname.type").isEqualTo("string")
+    }
+
+    @Test
+    fun `should validate requests against documentation`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin {
+                it.withRequestValidation()
+                it.withDocumentation(
+                    OpenApiDocumentation()
+                        .path("/refunds/{id}")
+                        .methods(HttpMethod.POST)
+                        .pathParams(OpenApiParam(name = "id", type = Long::class, required = true))
+                        .queryParams(OpenApiParam(name = "notify", type = Boolean::class))
+                        .requestBody(OpenApiRequestBody(content = arrayOf(OpenApiContent(from = Refund::class)), required = true))
+                )
+            })
+            config.router.mount { it.post("/refunds/{id}") { ctx -> ctx.result("refunded") } }
+        }
+
+        try {
+            val validRefund = """{ "invoice": { "id": "1", "customer": { "name": "Panda" } } }"""
+
+            val validResponse = Unirest.post("http://localhost:${app.port()}/refunds/1?notify=true")
+                .header("Content-Type", "application/json")
+                .body(validRefund)
+                .asString()
+            assertThat(validResponse.status).isEqualTo(200)
+            assertThat(validResponse.body).isEqualTo("refunded")
+
+            val invalidParameters = Unirest.post("http://localhost:${app.port()}/refunds/abc?notify=maybe")
+                .header("Content-Type", "application/json")
+                .body(validRefund)
+                .asString()
+            assertThat(invalidParameters.status).isEqualTo(400)
+            assertThat(invalidParameters.headers.getFirst("Content-Type")).startsWith("application/problem+json")
+            assertThatJson(invalidParameters.body).inPath("$.errors[*].name").isArray.containsExactlyInAnyOrder("id", "notify")
+
+            val missingBody = Unirest.post("http://localhost:${app.port()}/refunds/1").asString()
+            assertThat(missingBody.status).isEqualTo(400)
+            assertThatJson(missingBody.body).inPath("$.errors[0].location").isEqualTo("body")
+            assertThatJson(missingBody.body).inPath("$.errors[0].keyword").isEqualTo("required")
+
+            val invalidBody = Unirest.post("http://localhost:${app.port()}/refunds/1")
+                .header("Content-Type", "application/json")
+                .body("""{ "invoice": { "id": "1" }, "reason": 1 }""")
+                .asString()
+            assertThat(invalidBody.status).isEqualTo(400)
+            assertThatJson(invalidBody.body).inPath("$.errors[*].pointer").isArray.containsExactlyInAnyOrder("/invoice", "/reason")
+
+            // java.net.http doesn't add Content-Type, unlike Unirest
+            val invalidBodyWithoutContentType = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI("http://localhost:${app.port()}/refunds/1"))
+                    .POST(HttpRequest.BodyPublishers.ofString("""{ "reason": 1 }"""))
+                    .build(),
+                BodyHandlers.ofString()
+            )
+            assertThat(invalidBodyWithoutContentType.statusCode()).isEqualTo(400)
+            assertThatJson(invalidBodyWithoutContentType.body()).inPath("$.errors[*].pointer").isArray.containsExactlyInAnyOrder("", "/reason")
+
+            val undeclaredMediaType = Unirest.post("http://localhost:${app.port()}/refunds/1")
+                .header("Content-Type", "text/plain")
+                .body("""{ "reason": 1 }""")
+                .asString()
+            assertThat(undeclaredMediaType.status).isEqualTo(415)
+            assertThatJson(undeclaredMediaType.body).inPath("$.errors[0].keyword").isEqualTo("contentType")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should validate streamed request bodies while they are read`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin {
+                it.withRequestValidation { validation -> validation.withStreamingBody(HttpMethod.POST, "/imports") }
+                it.withDocumentation(
+                    OpenApiDocumentation()
+                        .path("/imports")
+                        .methods(HttpMethod.POST)
+                        .requestBody(OpenApiRequestBody(content = arrayOf(OpenApiContent(from = Array<Refund>::class)), required = true))
+                )
+            })
+            config.router.mount {
+                it.post("/imports") { ctx -> ctx.result(ValidatedRequestBody.of(ctx).read(Array<Refund>::class.java).size.toString()) }
+                // violations of documents validated by the application are not request validation errors
+                it.get("/exports") {
+                    val schema = ObjectMapper().readTree("""{ "type": "array", "maxItems": 0 }""")
+                    SchemaValidatorCompiler().compileStreaming(schema).validate(ObjectMapper().factory.createParser("[1]"))
+                }
+            }
+        }
+
+        try {
+            val refund = """{ "invoice": { "id": "1", "customer": { "name": "Panda" } } }"""
+
+            val validResponse = Unirest.post("http://localhost:${app.port()}/imports")
+                .header("Content-Type", "application/json")
+                .body("[$refund, $refund]")
+                .asString()
+            assertThat(validResponse.status).isEqualTo(200)
+            assertThat(validResponse.body).isEqualTo("2")
+
+            val invalidResponse = Unirest.post("http://localhost:${app.port()}/imports")
+                .header("Content-Type", "application/json")
+                .body("""[$refund, { "reason": "late" }, { "reason": 1 }]""")
+                .asString()
+            assertThat(invalidResponse.status).isEqualTo(400)
+            assertThatJson(invalidResponse.body).inPath("$.errors").isArray.hasSize(1)
+            assertThatJson(invalidResponse.body).inPath("$.errors[0].pointer").isEqualTo("/1")
+            assertThatJson(invalidResponse.body).inPath("$.errors[0].keyword").isEqualTo("required")
+
+            val invalidResponseWithoutContentType = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI("http://localhost:${app.port()}/imports"))
+                    .POST(HttpRequest.BodyPublishers.ofString("""[{ "reason": "late" }]"""))
+                    .build(),
+                BodyHandlers.ofString()
+            )
+            assertThat(invalidResponseWithoutContentType.statusCode()).isEqualTo(400)
+            assertThatJson(invalidResponseWithoutContentType.body()).inPath("$.errors[0].pointer").isEqualTo("/0")
+
+            val undeclaredMediaType = Unirest.post("http://localhost:${app.port()}/imports")
+                .header("Content-Type", "text/csv")
+                .body("reason\nlate")
+                .asString()
+            assertThat(undeclaredMediaType.status).isEqualTo(415)
+
+            assertThat(Unirest.get("http://localhost:${app.port()}/exports").asString().status).isEqualTo(500)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should fail fast on the first violation of streamed document`() {
+        val schema = ObjectMapper().readTree("""{ "type": "array", "maxItems": 2, "items": { "type": "integer" } }""")
+        val validator = SchemaValidatorCompiler().compileStreaming(schema)
+        val parser = validator.parser(ObjectMapper().factory.createParser("[1, 2, 3, \"not even read\"".toByteArray()))
+
+        assertThat(parser.nextToken()).isEqualTo(JsonToken.START_ARRAY)
+        assertThat(parser.nextToken()).isEqualTo(JsonToken.VALUE_NUMBER_INT)
+        assertThat(parser.nextToken()).isEqualTo(JsonToken.VALUE_NUMBER_INT)
+        assertThatThrownBy { parser.nextToken() }
+            .isInstanceOfSatisfying(SchemaValidationException::class.java) { assertThat(it.error.keyword).isEqualTo("maxItems") }
+    }
+
+    @Test
+    fun `should check formats, unique items and additional properties of values`() {
+        val mapper = ObjectMapper()
+        val validator = SchemaValidatorCompiler().compile(mapper.readTree("""
+            {
+              "type": "object",
+              "properties": {
+                "day": { "type": "string", "format": "date" },
+                "at": { "type": "string", "format": "date-time" },
+                "tags": { "type": "array", "uniqueItems": true }
+              },
+              "additionalProperties": { "type": "integer" }
+            }
+        """))
+
+        assertThat(validator.isValid(mapper.readTree("""{ "day": "2024-02-29", "at": "2024-02-29T23:59:59.5+01:00", "tags": ["a", "b"], "count": 1 }"""))).isTrue
+        assertThat(validator.isValid(mapper.readTree("""{ "at": "2024-02-29T12:00:00Z" }"""))).isTrue
+        assertThat(validator.isValid(mapper.readTree("""{ "day": "2023-02-29" }"""))).isFalse
+        assertThat(validator.isValid(mapper.readTree("""{ "day": "2024-13-01" }"""))).isFalse
+        assertThat(validator.isValid(mapper.readTree("""{ "at": "2024-02-29T24:00:00Z" }"""))).isFalse
+        assertThat(validator.isValid(mapper.readTree("""{ "at": "2024-02-29T12:00:00" }"""))).isFalse
+        assertThat(validator.isValid(mapper.readTree("""{ "tags": [{ "a": 1 }, { "a": 1 }] }"""))).isFalse
+        assertThat(validator.isValid(mapper.readTree("""{ "count": "1" }"""))).isFalse
+    }
+
+    @Test
+    fun `should check every numeric limit of schema`() {
+        val mapper = ObjectMapper()
+        val compiler = SchemaValidatorCompiler()
+        val limits = compiler.compile(mapper.readTree("""{ "minimum": 0, "exclusiveMinimum": -10, "maximum": 100, "exclusiveMaximum": 10 }"""))
+        val modifiers = compiler.compile(mapper.readTree("""{ "minimum": 0, "exclusiveMinimum": true, "maximum": 10, "exclusiveMaximum": false }"""))
+
+        assertThat(limits.isValid(mapper.readTree("0"))).isTrue
+        assertThat(limits.isValid(mapper.readTree("-1"))).isFalse
+        assertThat(limits.isValid(mapper.readTree("10"))).isFalse
+        assertThat(modifiers.isValid(mapper.readTree("0"))).isFalse
+        assertThat(modifiers.isValid(mapper.readTree("10"))).isTrue
+        assertThatThrownBy { compiler.compile(mapper.readTree("""{ "type": "strnig" }""")) }
+            .isInstanceOf(IllegalStateException::class.java)
+            .hasMessageContaining("strnig")
+    }
+
+    @JsonSchema
+    data class Shipment(val id: String, val weight: Int)
+
+    @Test
+    fun `should serve generated json schemes`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(JsonSchemaPlugin { it.withBundle() })
+        }
+
+        try {
+            val shipmentName = Shipment::class.java.canonicalName
+            val index = Unirest.get("http://localhost:${app.port()}/json-schemes").asString()
+            assertThat(index.headers.getFirst("Cache-Control")).isEqualTo("no-cache")
+
+            val schemaLink = ObjectMapper().readTree(index.body).path("schemas").path(shipmentName).asText()
+            assertThat(schemaLink).startsWith("/json-schemes/$shipmentName?r=")
+
+            val schema = Unirest.get("http://localhost:${app.port()}$schemaLink").asString()
+            assertThat(schema.status).isEqualTo(200)
+            assertThat(schema.headers.getFirst("Cache-Control")).contains("immutable")
+            assertThatJson(schema.body).inPath("$.properties.weight.type").isEqualTo("integer")
+
+            val notModified = Unirest.get("http://localhost:${app.port()}/json-schemes/$shipmentName")
+                .header("If-None-Match", schema.headers.getFirst("ETag"))
+                .asString()
+            assertThat(notModified.status).isEqualTo(304)
+
+            val compressed = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI("http://localhost:${app.port()}/json-schemes/$shipmentName")).header("Accept-Encoding", "gzip").build(),
+                BodyHandlers.ofInputStream()
+            )
+            assertThat(compressed.headers().firstValue("Content-Encoding")).hasValue("gzip")
+            assertThatJson(GZIPInputStream(compressed.body()).readAllBytes().decodeToString()).isEqualTo(schema.body)
+
+            val bundle = Unirest.get("http://localhost:${app.port()}/json-schemes?bundle=true").asString().body
+            assertThatJson(bundle).inPath("$.definitions['$shipmentName'].required").isArray.contains("id", "weight")
+
+            assertThat(Unirest.get("http://localhost:${app.port()}/json-schemes/com.example.Unknown").asString().status).isEqualTo(404)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should link json schemes under context path`() {
+        val app = Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.router.contextPath = "/api"
+            config.registerPlugin(JsonSchemaPlugin { it.withBundle() })
+        }
+
+        try {
+            val index = ObjectMapper().readTree(Unirest.get("http://localhost:${app.port()}/api/json-schemes").asString().body)
+            val schemaLink = index.path("schemas").path(Shipment::class.java.canonicalName).asText()
+            val bundleLink = index.path("bundle").asText()
+
+            assertThat(schemaLink).startsWith("/api/json-schemes/")
+            assertThat(Unirest.get("http://localhost:${app.port()}$schemaLink").asString().status).isEqualTo(200)
+            assertThat(bundleLink).startsWith("/api/json-schemes?bundle=true")
+            assertThat(Unirest.get("http://localhost:${app.port()}$bundleLink").asString().status).isEqualTo(200)
+        } finally {
+            app.stop()
+        }
+    }
+
+}
@@ -1,7 +1,8 @@
 package io.javalin.openapi.plugin.redoc
 
 import io.javalin.http.Context
-import io.javalin.http.Handler
+import io.javalin.openapi.metrics.MeasurableHandler
+import io.javalin.openapi.storage.PreparedResponse
 
 /**
  * Based on https://github.com/tipsy/javalin/blob/master/javalin-openapi/src/main/java/io/javalin/plugin/openapi/ui/ReDocRenderer.kt by @chsfleury
@@ -11,14 +12,18 @@ class ReDocHandler(
     private val documentationPath: String,
     private val version: String,
     private val routingPath: String,
-    private val basePath: String?
-) : Handler {
+    private val basePath: String?,
+    /** Cache-Control of the page, it's always served with ETag */
+    private val cacheControl: String? = PreparedResponse.REVALIDATE
+) : MeasurableHandler {
 
-    override fun handle(context: Context) {
-        context
-            .html(createReDocUI())
-            .res().characterEncoding = "UTF-8"
-    }
+    private val multiplePathOperatorsRegex = Regex("/+")
+
+    /** Page is rendered once, it depends only on the configuration */
+    private val reDocUi = PreparedResponse(createReDocUI().toByteArray(Charsets.UTF_8), "text/html; charset=UTF-8")
+
+    override fun serve(context: Context): Long =
+        reDocUi.serve(context, cacheControl)
 
     private fun createReDocUI(): String {
         val rootPath = (basePath ?: "") + routingPath
@@ -50,8 +55,6 @@ class ReDocHandler(
         |""".trimMargin()
     }
 
-    private val multiplePathOperatorsRegex = Regex("/+")
-
     private fun String.removedDoubledPathOperators(): String =
         replace(multiplePathOperatorsRegex, "/")
 
@@ -1,6 +1,13 @@
 package io.javalin.openapi.plugin.redoc
 
 import io.javalin.config.JavalinConfig
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.metrics.DocumentationMetricsHandler
+import io.javalin.openapi.metrics.DocumentationMetricsProvider
+import io.javalin.openapi.metrics.MeasuredHandler
+import io.javalin.openapi.storage.ContentStorage
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.openapi.storage.WebJarAssetCache
 import io.javalin.plugin.Plugin
 import io.javalin.security.RouteRole
 import java.util.function.Consumer
@@ -20,9 +27,19 @@ class ReDocConfiguration {
     var version = "2.1.4"
     /** ReDoc WebJar route */
     var webJarPath = "/webjars/redoc"
+    /** Storage of webjar assets read from the jar, kept on the heap if not specified, e.g. [io.javalin.openapi.storage.DirectContentStorage] */
+    var webJarStorage: ContentStorage? = null
+    /** Maximum size of webjar assets kept in memory, least recently used assets are read from the jar again */
+    var webJarCacheSize = WebJarAssetCache.DEFAULT_MAX_BYTES
+    /** Route with statistics of ReDoc routes as JSON, disabled if not specified */
+    var statisticsPath: String? = null
+    /** Cache-Control of ReDoc page, the page is always served with ETag, so cached copies are revalidated cheaply */
+    var uiCacheControl: String? = PreparedResponse.REVALIDATE
 }
 
-open class ReDocPlugin @JvmOverloads constructor(userConfig: Consumer<ReDocConfiguration> = Consumer {}) : Plugin<ReDocConfiguration>(userConfig, ReDocConfiguration()) {
+open class ReDocPlugin @JvmOverloads constructor(userConfig: Consumer<ReDocConfiguration> = Consumer {}) : Plugin<ReDocConfiguration>(userConfig, ReDocConfiguration()), DocumentationMetricsProvider {
+
+    private val metrics = DocumentationMetrics("redoc")
 
     override fun onStart(config: JavalinConfig) {
         val reDocHandler = ReDocHandler(
@@ -30,18 +47,34 @@ open class ReDocPlugin @JvmOverloads constructor(userConfig: Consumer<ReDocConfi
             documentationPath = pluginConfig.documentationPath,
             version = pluginConfig.version,
             routingPath = config.router.contextPath,
-            basePath = pluginConfig.basePath
+            basePath = pluginConfig.basePath,
+            cacheControl = pluginConfig.uiCacheControl
         )
 
         val webJarHandler = ReDocWebJarHandler(
-            redocWebJarPath = pluginConfig.webJarPath
+            redocWebJarPath = pluginConfig.webJarPath,
+            redocVersion = pluginConfig.version,
+            storage = pluginConfig.webJarStorage,
+            cacheSize = pluginConfig.webJarCacheSize,
+            metrics = metrics
         )
 
+        val measuredWebJarHandler = MeasuredHandler(metrics, "webjar", webJarHandler)
+
         config.router.mount { router ->
             router
-                .get(pluginConfig.uiPath, reDocHandler, *pluginConfig.roles)
-                .get("${pluginConfig.webJarPath}/*", webJarHandler, *pluginConfig.roles)
+                .get(pluginConfig.uiPath, MeasuredHandler(metrics, "ui", reDocHandler), *pluginConfig.roles)
+                .get("${pluginConfig.webJarPath}/*", measuredWebJarHandler, *pluginConfig.roles)
+                .head("${pluginConfig.webJarPath}/*", measuredWebJarHandler, *pluginConfig.roles)
+
+            pluginConfig.statisticsPath?.let {
+                router.get(it, DocumentationMetricsHandler(metrics), *pluginConfig.roles)
+            }
         }
     }
 
+    /** Statistics of ReDoc UI and webjar routes */
+    override fun getMetrics(): DocumentationMetrics =
+        metrics
+
 }
\ No newline at end of file
@@ -1,26 +1,36 @@
 package io.javalin.openapi.plugin.redoc
 
 import io.javalin.http.Context
-import io.javalin.http.Handler
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.metrics.MeasurableHandler
+import io.javalin.openapi.storage.ContentStorage
+import io.javalin.openapi.storage.HeapContentStorage
+import io.javalin.openapi.storage.JettyContentWriter
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.openapi.storage.WebJarAssetCache
 import org.eclipse.jetty.http.HttpStatus
-import org.eclipse.jetty.http.MimeTypes
 
-internal class ReDocWebJarHandler(private val redocWebJarPath: String) : Handler {
+internal class ReDocWebJarHandler(
+    private val redocWebJarPath: String,
+    private val redocVersion: String,
+    storage: ContentStorage? = null,
+    cacheSize: Long = WebJarAssetCache.DEFAULT_MAX_BYTES,
+    metrics: DocumentationMetrics? = null
+) : MeasurableHandler {
 
-    override fun handle(context: Context) {
-        val resource = ReDocPlugin::class.java.getResourceAsStream("/META-INF/resources" + redocWebJarPath + context.path().replaceFirst(context.contextPath(), "").replaceFirst(redocWebJarPath, ""))
+    private val assets = WebJarAssetCache(ReDocPlugin::class.java.classLoader, storage ?: HeapContentStorage(), cacheSize, metrics, JettyContentWriter)
 
-        if (resource == null) {
+    override fun serve(context: Context): Long {
+        val requestedResource = context.path().replaceFirst(context.contextPath(), "").replaceFirst(redocWebJarPath, "")
+        val asset = assets.find(redocWebJarPath + requestedResource)
+
+        if (asset == null) {
             context.status(HttpStatus.NOT_FOUND_404)
-            return
+            return 0
         }
 
-        context.res().characterEncoding = "UTF-8"
-        context.result(resource)
-
-        MimeTypes.getDefaultMimeByExtension(context.path())?.let {
-            context.contentType(it)
-        }
+        // assets of a specific bundle version never change, other paths have to be revalidated
+        return asset.serve(context, if (requestedResource.startsWith("/$redocVersion/")) PreparedResponse.IMMUTABLE else PreparedResponse.REVALIDATE)
     }
 
-}
\ No newline at end of file
+}
@@ -40,4 +40,28 @@ internal class RedocPluginTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `should serve redoc ui with validators`() {
+        val app = Javalin.createAndStart { it.registerPlugin(ReDocPlugin { redoc -> redoc.uiCacheControl = "public, max-age=60" }) }
+
+        try {
+            val response = Unirest.get("http://localhost:8080/redoc").asString()
+            assertThat(response.headers.getFirst("Cache-Control")).isEqualTo("public, max-age=60")
+            assertThat(response.headers.getFirst("Content-Type")).startsWith("text/html")
+
+            val etag = response.headers.getFirst("ETag")
+            assertThat(etag).isNotBlank()
+            assertThat(Unirest.get("http://localhost:8080/redoc").asString().headers.getFirst("ETag")).isEqualTo(etag)
+
+            val notModified = Unirest.get("http://localhost:8080/redoc")
+                .header("If-None-Match", etag)
+                .asString()
+
+            assertThat(notModified.status).isEqualTo(304)
+            assertThat(notModified.body).isEmpty()
+        } finally {
+            app.stop()
+        }
+    }
+
+}
@@ -3,6 +3,8 @@ package io.javalin.openapi.plugin.swagger
 import io.javalin.http.Context
 import io.javalin.http.Handler
 import io.javalin.http.HandlerType
+import io.javalin.openapi.metrics.MeasurableHandler
+import io.javalin.openapi.storage.PreparedResponse
 import io.javalin.router.Endpoint
 import io.javalin.security.RouteRole
 import org.intellij.lang.annotations.Language
@@ -25,7 +27,7 @@ class SwaggerEndpoint(
 class SwaggerHandler(
     private val title: String,
     private val documentationPath: String,
-    private val versions: Set<String>,
+    versions: Set<String>,
     private val swaggerVersion: String,
     private val validatorUrl: String?,
     private val routingPath: String,
@@ -33,19 +35,29 @@ class SwaggerHandler(
     private val tagsSorter: String,
     private val operationsSorter: String,
     private val customStylesheetFiles: List<Pair<String, String>>,
-    private val customJavaScriptFiles: List<Pair<String, String>>
-) : Handler {
+    private val customJavaScriptFiles: List<Pair<String, String>>,
+    /** Cache-Control of the page, it's always served with ETag */
+    private val cacheControl: String? = PreparedResponse.REVALIDATE
+) : MeasurableHandler {
 
-    private val swaggerUiHtml = createSwaggerUiHtml()
+    private val multiplePathOperatorsRegex = Regex("/+")
 
-    override fun handle(context: Context) {
-        context
-            .html(swaggerUiHtml)
-            .res()
-            .characterEncoding = "UTF-8"
+    /** Page rendered for the current list of versions, replaced as a whole, so its HTML and ETag always describe the same versions */
+    @Volatile
+    private var swaggerUiHtml = prepareSwaggerUiHtml(versions)
+
+    /** Re-renders Swagger UI with the given list of documentation versions */
+    fun updateVersions(versions: Set<String>) {
+        this.swaggerUiHtml = prepareSwaggerUiHtml(versions)
     }
 
-    private fun createSwaggerUiHtml(): String {
+    override fun serve(context: Context): Long =
+        swaggerUiHtml.serve(context, cacheControl)
+
+    private fun prepareSwaggerUiHtml(versions: Set<String>): PreparedResponse =
+        PreparedResponse(createSwaggerUiHtml(versions).toByteArray(Charsets.UTF_8), "text/html; charset=UTF-8")
+
+    private fun createSwaggerUiHtml(versions: Set<String>): String {
         val rootPath = (basePath ?: "") + routingPath
         val publicSwaggerAssetsPath = "$rootPath/webjars/swagger-ui/$swaggerVersion".removedDoubledPathOperators()
         val publicDocumentationPath = (rootPath + documentationPath).removedDoubledPathOperators()
@@ -116,9 +128,7 @@ class SwaggerHandler(
         return html
     }
 
-    private fun String.removedDoubledPathOperators(): String {
-        val multiplePathOperatorsRegex = Regex("/+")
-        return replace(multiplePathOperatorsRegex, "/")
-    }
+    private fun String.removedDoubledPathOperators(): String =
+        replace(multiplePathOperatorsRegex, "/")
 
 }
\ No newline at end of file
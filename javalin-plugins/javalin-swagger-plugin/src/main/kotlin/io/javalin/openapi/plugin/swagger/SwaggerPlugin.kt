@@ -3,9 +3,19 @@ package io.javalin.openapi.plugin.swagger
 import io.javalin.config.JavalinConfig
 import io.javalin.http.HandlerType
 import io.javalin.http.HandlerType.GET
+import io.javalin.http.HandlerType.HEAD
+import io.javalin.openapi.OpenApiDirectoryWatcher
 import io.javalin.openapi.OpenApiLoader
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.metrics.DocumentationMetricsHandler
+import io.javalin.openapi.metrics.DocumentationMetricsProvider
+import io.javalin.openapi.metrics.MeasuredHandler
+import io.javalin.openapi.storage.ContentStorage
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.openapi.storage.WebJarAssetCache
 import io.javalin.plugin.Plugin
 import io.javalin.security.RouteRole
+import java.nio.file.Path
 import java.util.function.Consumer
 
 class SwaggerConfiguration {
@@ -23,6 +33,18 @@ class SwaggerConfiguration {
     var version = "5.17.14"
     /** Swagger UI Bundler webjar location */
     var webJarPath = "/webjars/swagger-ui"
+    /** Storage of webjar assets read from the jar, kept on the heap if not specified, e.g. [io.javalin.openapi.storage.DirectContentStorage] */
+    var webJarStorage: ContentStorage? = null
+    /** Maximum size of webjar assets kept in memory, least recently used assets are read from the jar again */
+    var webJarCacheSize = WebJarAssetCache.DEFAULT_MAX_BYTES
+    /** Refresh list of documentation versions when generated documentation changes */
+    var hotReloadEnabled = false
+    /** External directory with generated documentation, exploded classpath is watched if not specified */
+    var hotReloadDirectory: Path? = null
+    /** Route with statistics of Swagger routes as JSON, disabled if not specified */
+    var statisticsPath: String? = null
+    /** Cache-Control of Swagger UI page, the page is always served with ETag, so cached copies are revalidated cheaply */
+    var uiCacheControl: String? = PreparedResponse.REVALIDATE
 
     // Swagger UI bundle configuration
     // ~ https://swagger.io/docs/open-source-tools/swagger-ui/usage/configuration/ */
@@ -50,11 +72,13 @@ class SwaggerConfiguration {
     }
 }
 
-open class SwaggerPlugin @JvmOverloads constructor(userConfig: Consumer<SwaggerConfiguration> = Consumer {}) : Plugin<SwaggerConfiguration>(userConfig, SwaggerConfiguration()) {
+open class SwaggerPlugin @JvmOverloads constructor(userConfig: Consumer<SwaggerConfiguration> = Consumer {}) : Plugin<SwaggerConfiguration>(userConfig, SwaggerConfiguration()), DocumentationMetricsProvider {
+
+    private val metrics = DocumentationMetrics("swagger")
 
     override fun onStart(config: JavalinConfig) {
-        val versions = OpenApiLoader()
-            .loadVersions()
+        val loader = OpenApiLoader(pluginConfig.hotReloadDirectory)
+        val versions = loader.loadVersions()
 
         val swaggerHandler = SwaggerHandler(
             title = pluginConfig.title,
@@ -67,40 +91,72 @@ open class SwaggerPlugin @JvmOverloads constructor(userConfig: Consumer<SwaggerC
             tagsSorter = pluginConfig.tagsSorter,
             operationsSorter = pluginConfig.operationsSorter,
             customStylesheetFiles = pluginConfig.customStylesheetFiles,
-            customJavaScriptFiles = pluginConfig.customJavaScriptFiles
+            customJavaScriptFiles = pluginConfig.customJavaScriptFiles,
+            cacheControl = pluginConfig.uiCacheControl
         )
 
+        if (pluginConfig.hotReloadEnabled) {
+            val directory = pluginConfig.hotReloadDirectory
+                ?: OpenApiLoader.findClasspathDirectory()
+                ?: throw IllegalStateException("Hot reload requires external directory with documentation or exploded classpath")
+
+            val watcher = OpenApiDirectoryWatcher(directory) { fileName ->
+                if (fileName == ".index") {
+                    swaggerHandler.updateVersions(loader.loadVersions())
+                }
+            }
+
+            watcher.start()
+            config.events { it.serverStopped { watcher.close() } }
+        }
+
         val swaggerEndpoint = SwaggerEndpoint(
             method = HandlerType.GET,
             path = pluginConfig.uiPath,
             roles = pluginConfig.roles.toSet(),
-            handler = swaggerHandler
+            handler = MeasuredHandler(metrics, "ui", swaggerHandler)
         )
 
         config.router.mount { router ->
             /** Register handler for swagger ui */
             router.addEndpoint(swaggerEndpoint)
 
+            pluginConfig.statisticsPath?.let {
+                router.get(it, DocumentationMetricsHandler(metrics), *pluginConfig.roles)
+            }
+
             /** Register webjar handler if and only if there isn't already a [SwaggerWebJarHandler] at configured route */
             config.pvt.internalRouter
                 .findHttpHandlerEntries(HandlerType.GET, "${pluginConfig.webJarPath}/*")
                 .takeIf { routes -> routes.noneMatch { it.endpoint is SwaggerEndpoint } }
                 ?.run {
                     val swaggerWebJarHandler = SwaggerWebJarHandler(
-                        swaggerWebJarPath = pluginConfig.webJarPath
+                        swaggerWebJarPath = pluginConfig.webJarPath,
+                        swaggerVersion = pluginConfig.version,
+                        storage = pluginConfig.webJarStorage,
+                        cacheSize = pluginConfig.webJarCacheSize,
+                        metrics = metrics
                     )
-                    router.addEndpoint(
-                        SwaggerEndpoint(
-                            method = GET,
-                            path = "${pluginConfig.webJarPath}/*",
-                            roles = pluginConfig.roles.toSet(),
-                            handler = swaggerWebJarHandler
+                    val measuredWebJarHandler = MeasuredHandler(metrics, "webjar", swaggerWebJarHandler)
+
+                    listOf(GET, HEAD).forEach { method ->
+                        router.addEndpoint(
+                            SwaggerEndpoint(
+                                method = method,
+                                path = "${pluginConfig.webJarPath}/*",
+                                roles = pluginConfig.roles.toSet(),
+                                handler = measuredWebJarHandler
+                            )
                         )
-                    )
+                    }
                 }
         }
     }
 
+    /** Statistics of Swagger UI and webjar routes */
+    override fun getMetrics(): DocumentationMetrics =
+        metrics
+
     override fun repeatable(): Boolean =
         true
 
@@ -1,35 +1,39 @@
 package io.javalin.openapi.plugin.swagger
 
 import io.javalin.http.Context
-import io.javalin.http.Handler
+import io.javalin.openapi.metrics.DocumentationMetrics
+import io.javalin.openapi.metrics.MeasurableHandler
+import io.javalin.openapi.storage.ContentStorage
+import io.javalin.openapi.storage.HeapContentStorage
+import io.javalin.openapi.storage.JettyContentWriter
+import io.javalin.openapi.storage.PreparedResponse
+import io.javalin.openapi.storage.WebJarAssetCache
 import org.eclipse.jetty.http.HttpStatus
-import org.eclipse.jetty.http.MimeTypes
-import java.io.InputStream
 
 internal class SwaggerWebJarHandler(
     private val swaggerWebJarPath: String,
-) : Handler {
+    private val swaggerVersion: String,
+    storage: ContentStorage? = null,
+    cacheSize: Long = WebJarAssetCache.DEFAULT_MAX_BYTES,
+    metrics: DocumentationMetrics? = null
+) : MeasurableHandler {
 
-    override fun handle(context: Context) {
-        val resourceRootPath = "/META-INF/resources$swaggerWebJarPath"
+    private val assets = WebJarAssetCache(SwaggerPlugin::class.java.classLoader, storage ?: HeapContentStorage(), cacheSize, metrics, JettyContentWriter)
 
+    override fun serve(context: Context): Long {
         val requestedResource = context.path()
             .replaceFirst(context.contextPath(), "")
             .replaceFirst(swaggerWebJarPath, "")
 
-        val resource: InputStream? = SwaggerPlugin::class.java.getResourceAsStream(resourceRootPath + requestedResource)
+        val asset = assets.find(swaggerWebJarPath + requestedResource)
 
-        if (resource == null) {
+        if (asset == null) {
             context.status(HttpStatus.NOT_FOUND_404)
-            return
+            return 0
         }
 
-        context.result(resource)
-        context.res().characterEncoding = "UTF-8"
-
-        MimeTypes.getDefaultMimeByExtension(context.path())?.let { // Swagger returns various non-standard assets like .js.map that are not recognized
-            context.contentType(it)
-        }
+        // assets of a specific bundle version never change, other paths have to be revalidated
+        return asset.serve(context, if (requestedResource.startsWith("/$swaggerVersion/")) PreparedResponse.IMMUTABLE else PreparedResponse.REVALIDATE)
     }
 
-}
\ No newline at end of file
+}
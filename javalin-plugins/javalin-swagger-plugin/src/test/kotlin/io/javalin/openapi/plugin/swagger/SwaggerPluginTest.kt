@@ -164,4 +164,82 @@ internal class SwaggerPluginTest {
         }
     }
 
+    @Test
+    fun `should record statistics of swagger routes`() {
+        val plugin = SwaggerPlugin { it.statisticsPath = "/swagger-statistics" }
+        val app = Javalin.createAndStart { it.registerPlugin(plugin) }
+
+        try {
+            Unirest.get("http://localhost:8080/swagger").asString()
+            Unirest.get("http://localhost:8080/webjars/swagger-ui/${SwaggerConfiguration().version}/swagger-ui.css").asString()
+
+            val requests = plugin.getMetrics().snapshot().requests.associateBy { it.route }
+            assertThat(requests["ui"]?.count).isEqualTo(1)
+            assertThat(requests["ui"]?.bytes).isPositive()
+            assertThat(requests["webjar"]?.count).isEqualTo(1)
+            assertThat(requests["webjar"]?.bytes).isPositive()
+
+            val statistics = Unirest.get("http://localhost:8080/swagger-statistics")
+                .asString()
+                .body
+
+            assertThat(statistics).contains(""""plugin":"swagger"""")
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve swagger ui with validators`() {
+        val app = Javalin.createAndStart { it.registerPlugin(SwaggerPlugin()) }
+
+        try {
+            val response = Unirest.get("http://localhost:8080/swagger").asString()
+            assertThat(response.headers.getFirst("Cache-Control")).isEqualTo("no-cache")
+            assertThat(response.headers.getFirst("Content-Type")).startsWith("text/html")
+
+            val notModified = Unirest.get("http://localhost:8080/swagger")
+                .header("If-None-Match", response.headers.getFirst("ETag"))
+                .asString()
+
+            assertThat(notModified.status).isEqualTo(304)
+        } finally {
+            app.stop()
+        }
+    }
+
+    @Test
+    fun `should serve cached webjar assets with validators`() {
+        val plugin = SwaggerPlugin()
+        val app = Javalin.createAndStart { it.registerPlugin(plugin) }
+        val assetUrl = "http://localhost:8080/webjars/swagger-ui/${SwaggerConfiguration().version}/swagger-ui.css"
+
+        try {
+            val response = Unirest.get(assetUrl).asString()
+            assertThat(response.status).isEqualTo(200)
+            assertThat(response.headers.getFirst("Cache-Control")).isEqualTo("public, max-age=31536000, immutable")
+            assertThat(response.headers.getFirst("Content-Type")).startsWith("text/css")
+
+            val etag = response.headers.getFirst("ETag")
+            assertThat(etag).isNotBlank()
+
+            val head = Unirest.head(assetUrl).asEmpty()
+            assertThat(head.status).isEqualTo(200)
+            assertThat(head.headers.getFirst("ETag")).isEqualTo(etag)
+            assertThat(head.headers.getFirst("Content-Length")).isEqualTo(response.body.toByteArray().size.toString())
+
+            val notModified = Unirest.get(assetUrl)
+                .header("If-None-Match", etag)
+                .asString()
+
+            assertThat(notModified.status).isEqualTo(304)
+            assertThat(Unirest.get("http://localhost:8080/webjars/swagger-ui/${SwaggerConfiguration().version}/missing.css").asString().status).isEqualTo(404)
+
+            val cache = plugin.getMetrics().snapshot().caches.first { it.cache == "webjar" }
+            assertThat(cache.hits).isEqualTo(2)
+        } finally {
+            app.stop()
+        }
+    }
+
 }
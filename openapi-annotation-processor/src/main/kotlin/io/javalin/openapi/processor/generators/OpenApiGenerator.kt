@@ -1,7 +1,11 @@
 package io.javalin.openapi.processor.generators
 
+import com.fasterxml.jackson.annotation.JsonInclude.Include
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.google.gson.JsonArray
+import com.google.gson.JsonElement
 import com.google.gson.JsonObject
+import com.google.gson.JsonParser
 import io.javalin.http.HttpStatus
 import io.javalin.openapi.ContentType.AUTODETECT
 import io.javalin.openapi.HttpMethod
@@ -9,12 +13,14 @@ import io.javalin.openapi.NULL_CLASS
 import io.javalin.openapi.NULL_STRING
 import io.javalin.openapi.OpenApi
 import io.javalin.openapi.OpenApiContent
+import io.javalin.openapi.OpenApiDiff
 import io.javalin.openapi.OpenApiOperation.AUTO_GENERATE
 import io.javalin.openapi.OpenApiParam
 import io.javalin.openapi.OpenApiRequestBody
 import io.javalin.openapi.OpenApiResponse
 import io.javalin.openapi.OpenApis
 import io.javalin.openapi.experimental.ClassDefinition
+import io.javalin.openapi.experimental.OpenApiDefinitionConfiguration
 import io.javalin.openapi.experimental.StructureType.ARRAY
 import io.javalin.openapi.experimental.processor.generators.ExampleGenerator
 import io.javalin.openapi.experimental.processor.generators.ExampleGenerator.toExampleProperty
@@ -47,6 +53,11 @@ internal class OpenApiGenerator {
 
     private val componentReferences = mutableMapOf<String, ClassDefinition>()
 
+    // same serialization of definition models as in OpenApi plugin
+    private val definitionMapper by lazy {
+        ObjectMapper().setSerializationInclusion(Include.NON_NULL)
+    }
+
     fun generate(roundEnvironment: RoundEnvironment) {
         val aggregatedOpenApiAnnotations = roundEnvironment.getElementsAnnotatedWith(OpenApis::class.java)
             .flatMap { element ->
@@ -64,10 +75,13 @@ internal class OpenApiGenerator {
             .groupBy { (version, _) -> version }
             .mapValues { (_, annotations) -> annotations.map { it.second } }
 
+        val generatedSchemas = mutableListOf<Pair<String, String>>()
+
         openApiAnnotationsByVersion
             .map { (version, openApiAnnotations) ->
                 val preparedOpenApiAnnotations = openApiAnnotations.toSet()
-                val generatedOpenApiSchema = generateSchema(preparedOpenApiAnnotations)
+                val generatedOpenApiSchema = generateSchema(version, preparedOpenApiAnnotations)
+                generatedSchemas.add(version.replace(" ", "-") to generatedOpenApiSchema)
 
                 val resourceName = "openapi-${version.replace(" ", "-")}.json"
                 val resource = context.env.filer.saveResource(context, "openapi-plugin/$resourceName", generatedOpenApiSchema)
@@ -91,15 +105,33 @@ internal class OpenApiGenerator {
             }
             .joinToString(separator = "\n")
             .let { context.env.filer.saveResource(context, "openapi-plugin/.index", it) }
+
+        if (context.configuration.versionDiffsEnabled) {
+            generateVersionDiffs(generatedSchemas)
+        }
+    }
+
+    /** Saves JSON Patch between each pair of adjacent versions, so OpenApi plugin doesn't have to compute them at runtime */
+    private fun generateVersionDiffs(generatedSchemas: List<Pair<String, String>>) {
+        val diff = OpenApiDiff(definitionMapper)
+
+        generatedSchemas.zipWithNext { (sourceVersion, sourceSchema), (targetVersion, targetSchema) ->
+            val patch = diff.diff(sourceSchema.toByteArray(), targetSchema.toByteArray())
+            context.env.filer.saveResource(context, "openapi-plugin/${OpenApiDiff.getDiffResourceName(sourceVersion, targetVersion)}", patch.decodeToString())
+        }
     }
 
     /**
      * Based on https://swagger.io/specification/
      *
+     * @param version version of the documentation
      * @param openApiAnnotations annotation instances to map
      * @return OpenApi JSON response
      */
-    private fun generateSchema(openApiAnnotations: Collection<Pair<Element, OpenApi>>): String {
+    private fun generateSchema(version: String, openApiAnnotations: Collection<Pair<Element, OpenApi>>): String {
+        val definition = context.configuration.definitionConfiguration
+            ?.let { OpenApiDefinitionConfiguration().also { definition -> it.accept(version, definition) } }
+
         val openApi = JsonObject()
         openApi.addProperty("openapi", "3.0.3")
 
@@ -107,8 +139,12 @@ internal class OpenApiGenerator {
         val info = JsonObject()
         info.addProperty("title", context.parameters.info.title)
         info.addProperty("version", context.parameters.info.version)
+        definition?.info?.let { customInfo -> customInfo.toJsonElement().asJsonObject.entrySet().forEach { (key, value) -> info.add(key, value) } }
         openApi.add("info", info)
 
+        // fill servers
+        definition?.servers?.takeIf { it.isNotEmpty() }?.let { openApi.add("servers", it.toJsonElement()) }
+
         // fill paths
         val paths = JsonObject()
         openApi.add("paths", paths)
@@ -255,11 +291,21 @@ internal class OpenApiGenerator {
             }
 
         components.add("schemas", schemas)
+        definition?.securitySchemes?.takeIf { it.isNotEmpty() }?.let { components.add("securitySchemes", it.toJsonElement()) }
         openApi.add("components", components)
 
+        // fill global security
+        definition?.globalSecurity
+            ?.takeIf { it.isNotEmpty() }
+            ?.map { mapOf(it.name to it.scopes) }
+            ?.let { openApi.add("security", it.toJsonElement()) }
+
         return openApi.toPrettyString()
     }
 
+    private fun Any.toJsonElement(): JsonElement =
+        JsonParser.parseString(definitionMapper.writeValueAsString(this))
+
     private fun JsonObject.addRequestBody(openApiElement: Element, requestBodyAnnotation: OpenApiRequestBody) {
         val requestBody = JsonObject()
         requestBody.addString("description", requestBodyAnnotation.description)
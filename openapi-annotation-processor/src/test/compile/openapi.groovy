@@ -1,9 +1,13 @@
 import io.javalin.openapi.experimental.AnnotationProcessorContext
 import io.javalin.openapi.experimental.ClassDefinition
 import io.javalin.openapi.experimental.EmbeddedTypeProcessorContext
+import io.javalin.openapi.BasicAuth
+import io.javalin.openapi.OpenApiInfo
+import io.javalin.openapi.OpenApiServer
 import io.javalin.openapi.experimental.ExperimentalCompileOpenApiConfiguration
 import io.javalin.openapi.experimental.OpenApiAnnotationProcessorConfiguration
 import io.javalin.openapi.experimental.OpenApiAnnotationProcessorConfigurer
+import io.javalin.openapi.experimental.OpenApiDefinitionConfiguration
 import io.javalin.openapi.experimental.SimpleType
 
 import javax.lang.model.element.Element
@@ -45,6 +49,17 @@ class OpenApiConfiguration implements OpenApiAnnotationProcessorConfigurer {
 
             return false
         })
+
+        // Used by OpenApiAnnotationTest
+        configuration.definitionConfiguration = { String version, OpenApiDefinitionConfiguration definition ->
+            if (version == 'should_write_definition_configuration') {
+                definition
+                    .withInfo({ OpenApiInfo info -> info.description('Compile-time description') })
+                    .withServer({ OpenApiServer server -> server.url('https://example.com') })
+                    .withSecurityScheme('BasicAuth', new BasicAuth())
+                    .withGlobalSecurity('BasicAuth')
+            }
+        }
     }
 
 }
\ No newline at end of file
@@ -2,19 +2,25 @@
 
 package io.javalin.openapi.processor
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import io.javalin.openapi.Custom
 import io.javalin.openapi.Discriminator
 import io.javalin.openapi.DiscriminatorMappingName
 import io.javalin.openapi.DiscriminatorProperty
 import io.javalin.openapi.JsonSchema
+import io.javalin.openapi.JsonSchemaRegistry
 import io.javalin.openapi.OneOf
 import io.javalin.openapi.OpenApi
 import io.javalin.openapi.OpenApiContent
 import io.javalin.openapi.OpenApiName
 import io.javalin.openapi.OpenApiResponse
 import io.javalin.openapi.processor.specification.OpenApiAnnotationProcessorSpecification
+import io.javalin.openapi.validation.JsonSchemaValidators
+import io.javalin.openapi.validation.SchemaValidationException
 import net.javacrumbs.jsonunit.assertj.JsonAssertions.assertThatJson
 import net.javacrumbs.jsonunit.assertj.JsonAssertions.json
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
 import org.junit.jupiter.api.Test
 
 internal class CompositionTest : OpenApiAnnotationProcessorSpecification() {
@@ -76,6 +82,31 @@ internal class CompositionTest : OpenApiAnnotationProcessorSpecification() {
             """))
     }
 
+    @Test
+    fun should_look_up_generated_json_schemes_by_class() {
+        val registry = JsonSchemaRegistry()
+        val schema = registry.find(SomeConfiguration::class.java)
+
+        assertThat(registry.getNames()).contains(SomeConfiguration::class.java.canonicalName)
+        assertThat(schema).isNotNull.isSameAs(registry.find(SomeConfiguration::class.java.canonicalName))
+        assertThat(schema!!.getNode()).isSameAs(schema.getNode())
+        assertThat(schema.getNode().path("properties").has("storage")).isTrue
+        assertThat(registry.getMemoryUsage().getValue(schema.name).treeBytes).isPositive
+    }
+
+    @Test
+    fun should_validate_payloads_with_compiled_json_schemes() {
+        val validators = JsonSchemaValidators()
+        val validator = validators.get(SomeConfiguration::class.java)
+        val jsonMapper = ObjectMapper()
+
+        assertThat(validators.get(SomeConfiguration::class.java)).isSameAs(validator)
+        assertThat(validator.isValid(jsonMapper.readTree("""{ "storage": { "type": "fs" } }"""))).isTrue
+        assertThat(validator.validate(jsonMapper.readTree("""{ "storage": { "type": "ftp" } }""")).map { it.keyword }).containsExactly("oneOf")
+        assertThatThrownBy { validator.validate(jsonMapper.factory.createParser("""{ "storage": { "type": "s3", "region": "eu" } }""")) }
+            .isInstanceOf(SchemaValidationException::class.java)
+    }
+
     @OneOf(
         discriminator = Discriminator(
             property = DiscriminatorProperty(
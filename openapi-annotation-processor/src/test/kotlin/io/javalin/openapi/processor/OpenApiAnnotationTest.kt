@@ -27,6 +27,29 @@ internal class OpenApiAnnotationTest : OpenApiAnnotationProcessorSpecification()
             .containsEntry("info", json("""{ "title":"", "version": "" }"""))
     }
 
+    @OpenApi(
+        path = "/definition",
+        versions = ["should_write_definition_configuration"]
+    )
+    @Test
+    fun should_write_definition_configuration() = withOpenApi("should_write_definition_configuration") {
+        assertThatJson(it)
+            .inPath("$.info")
+            .isEqualTo(json("""{ "title":"", "version": "", "description": "Compile-time description" }"""))
+
+        assertThatJson(it)
+            .inPath("$.servers[0].url")
+            .isEqualTo("https://example.com")
+
+        assertThatJson(it)
+            .inPath("$.components.securitySchemes.BasicAuth")
+            .isEqualTo(json("""{ "type": "http", "scheme": "basic" }"""))
+
+        assertThatJson(it)
+            .inPath("$.security")
+            .isEqualTo(json("""[{ "BasicAuth": [] }]"""))
+    }
+
     @OpenApi(
         path = "/basic",
         versions = ["should_contain_all_basic_properties_from_openapi_annotation"],
@@ -1,8 +1,25 @@
 description = "Javalin OpenAPI Specification | Compile-time OpenAPI integration for Javalin 6.x"
 
+plugins {
+    id("me.champeau.jmh") version "0.7.2"
+}
+
 dependencies {
     val jacksonVersion = "2.18.1"
     api("com.fasterxml.jackson.core:jackson-databind:$jacksonVersion")
     api("com.fasterxml.jackson.module:jackson-module-kotlin:$jacksonVersion")
+    api("com.fasterxml.jackson.dataformat:jackson-dataformat-smile:$jacksonVersion")
+    api("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor:$jacksonVersion")
     api("com.google.code.gson:gson:2.10.1")
-}
\ No newline at end of file
+    compileOnly("io.micrometer:micrometer-core:1.13.6")
+
+    // interpretive validator used as a baseline of compiled schemas
+    jmh("com.networknt:json-schema-validator:1.5.3")
+    // requests with and without validation of the plugin
+    jmh(project(":javalin-plugins:javalin-openapi-plugin"))
+    jmh("io.javalin:javalin:6.4.0")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+}
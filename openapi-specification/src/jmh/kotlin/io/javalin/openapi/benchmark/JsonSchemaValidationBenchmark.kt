@@ -0,0 +1,89 @@
+package io.javalin.openapi.benchmark
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.networknt.schema.JsonSchema
+import com.networknt.schema.JsonSchemaFactory
+import com.networknt.schema.SpecVersion.VersionFlag
+import io.javalin.openapi.JsonSchemaRegistry
+import io.javalin.openapi.validation.CompiledJsonSchema
+import io.javalin.openapi.validation.JsonSchemaValidators
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares validators compiled from draft-07 schemas generated for `@JsonSchema` classes
+ * with an interpretive validator, that reads keywords of the schema for every validated message.
+ * Messages are validated both as parsed trees and while they're read from bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class JsonSchemaValidationBenchmark {
+
+    private val jsonMapper = ObjectMapper()
+
+    private val content = """
+        { "id": 42, "kind": "updated", "key": "order-42", "tags": ["billing", "eu"], "payload": { "amount": 12.5, "currency": "EUR" } }
+    """.trimIndent().toByteArray()
+
+    private lateinit var message: JsonNode
+    private lateinit var compiled: CompiledJsonSchema
+    private lateinit var interpreted: JsonSchema
+
+    @Setup
+    fun setup() {
+        val registry = JsonSchemaRegistry(JsonSchemaValidationBenchmark::class.java.classLoader)
+        val schema = registry.find(EVENT_SCHEMA)!!.getNode()
+
+        message = jsonMapper.readTree(content)
+        compiled = JsonSchemaValidators(registry).find(EVENT_SCHEMA)!!
+        interpreted = JsonSchemaFactory.getInstance(VersionFlag.V7).getSchema(schema)
+
+        check(compiled.isValid(message) && interpreted.validate(message).isEmpty())
+    }
+
+    @Benchmark
+    fun compiledTree(blackhole: Blackhole) =
+        blackhole.consume(compiled.isValid(message))
+
+    @Benchmark
+    fun interpretedTree(blackhole: Blackhole) =
+        blackhole.consume(interpreted.validate(message))
+
+    @Benchmark
+    fun compiledParsedTree(blackhole: Blackhole) =
+        blackhole.consume(compiled.isValid(jsonMapper.readTree(content)))
+
+    @Benchmark
+    fun interpretedParsedTree(blackhole: Blackhole) =
+        blackhole.consume(interpreted.validate(jsonMapper.readTree(content)))
+
+    /** Validates tokens of the message without building its tree */
+    @Benchmark
+    fun compiledStreaming() =
+        jsonMapper.factory.createParser(content).use { compiled.validate(it) }
+
+    /** Builds tree of the message from tokens validated while they're read */
+    @Benchmark
+    fun compiledStreamingTree(blackhole: Blackhole) =
+        blackhole.consume(compiled.parser(jsonMapper.factory.createParser(content)).use { jsonMapper.readTree<JsonNode>(it) })
+
+    private companion object {
+        const val EVENT_SCHEMA = "io.javalin.openapi.benchmark.Event"
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.javalin.openapi.benchmark
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.javalin.Javalin
+import io.javalin.openapi.HttpMethod
+import io.javalin.openapi.OpenApiContent
+import io.javalin.openapi.OpenApiRequestBody
+import io.javalin.openapi.data.OpenApiDocumentation
+import io.javalin.openapi.plugin.OpenApiPlugin
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import java.net.URI
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse.BodyHandlers
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures requests to the same documented route with and without request validation,
+ * both handlers parse the body, so the difference is the overhead of validation itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class RequestValidationBenchmark {
+
+    data class Customer(val name: String, val email: String?)
+    data class Order(val id: Long, val customer: Customer, val items: List<String>, val note: String?)
+
+    private val jsonMapper = ObjectMapper()
+    private val httpClient = HttpClient.newHttpClient()
+
+    private val body = """
+        { "id": 42, "customer": { "name": "Panda", "email": "panda@javalin.io" }, "items": ["bamboo", "leaves"], "note": null }
+    """.trimIndent()
+
+    private lateinit var validatedApp: Javalin
+    private lateinit var app: Javalin
+    private lateinit var validatedRequest: HttpRequest
+    private lateinit var request: HttpRequest
+
+    @Setup
+    fun setup() {
+        validatedApp = createApp(validationEnabled = true)
+        app = createApp(validationEnabled = false)
+        validatedRequest = createRequest(validatedApp)
+        request = createRequest(app)
+
+        check(send(validatedRequest) == "42" && send(request) == "42")
+    }
+
+    @TearDown
+    fun tearDown() {
+        validatedApp.stop()
+        app.stop()
+    }
+
+    @Benchmark
+    fun withValidation(blackhole: Blackhole) =
+        blackhole.consume(send(validatedRequest))
+
+    @Benchmark
+    fun withoutValidation(blackhole: Blackhole) =
+        blackhole.consume(send(request))
+
+    private fun createApp(validationEnabled: Boolean): Javalin =
+        Javalin.createAndStart { config ->
+            config.jetty.defaultPort = 0
+            config.registerPlugin(OpenApiPlugin {
+                if (validationEnabled) {
+                    it.withRequestValidation()
+                }
+                it.withDocumentation(
+                    OpenApiDocumentation()
+                        .path("/orders")
+                        .methods(HttpMethod.POST)
+                        .requestBody(OpenApiRequestBody(content = arrayOf(OpenApiContent(from = Order::class)), required = true))
+                )
+            })
+            config.router.mount { it.post("/orders") { ctx -> ctx.result(jsonMapper.readTree(ctx.bodyInputStream()).path("id").asText()) } }
+        }
+
+    private fun createRequest(app: Javalin): HttpRequest =
+        HttpRequest.newBuilder(URI("http://localhost:${app.port()}/orders"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build()
+
+    private fun send(request: HttpRequest): String =
+        httpClient.send(request, BodyHandlers.ofString()).body()
+
+}
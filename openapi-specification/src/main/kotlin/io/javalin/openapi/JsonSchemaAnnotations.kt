@@ -117,19 +117,12 @@ data class JsonSchemaResource(
 
 }
 
+/** Prefer [JsonSchemaRegistry], which reads the index and content of each schema only once */
 class JsonSchemaLoader {
 
+    private val registry = JsonSchemaRegistry(JsonSchemaLoader::class.java.classLoader)
+
     fun loadGeneratedSchemes(): Set<JsonSchemaResource> =
-        JsonSchemaLoader::class.java.getResourceAsStream("/json-schemes/index")
-            ?.readAllBytes()
-            ?.decodeToString()
-            ?.trim()
-            ?.split("\n")
-            ?.asSequence()
-            ?.distinct()
-            ?.filter { it.isNotEmpty() }
-            ?.map { JsonSchemaResource(it) { JsonSchemaLoader::class.java.getResourceAsStream("/json-schemes/$it")!! } }
-            ?.toSet()
-            ?: emptySet()
-
-}
\ No newline at end of file
+        registry.getNames().mapTo(linkedSetOf()) { name -> JsonSchemaResource(name) { registry.find(name)!!.openStream() } }
+
+}
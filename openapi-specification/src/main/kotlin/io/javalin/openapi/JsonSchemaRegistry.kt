@@ -0,0 +1,129 @@
+package io.javalin.openapi
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+
+/** Memory retained by [RegisteredJsonSchema] */
+data class JsonSchemaMemoryUsage(
+    /** Size of the generated resource file */
+    val contentBytes: Long,
+    /** Estimated size of [RegisteredJsonSchema.getNode] tree, 0 if it hasn't been parsed yet */
+    val treeBytes: Long
+) {
+    val totalBytes: Long
+        get() = contentBytes + treeBytes
+}
+
+/** JSON Schema generated for class annotated with [JsonSchema], read from the classpath once and kept as immutable bytes */
+class RegisteredJsonSchema internal constructor(
+    /** Fully qualified name of the class, also the name of the resource file */
+    val name: String,
+    private val content: ByteArray,
+    private val jsonMapper: ObjectMapper
+) {
+
+    private companion object {
+        // rough sizes of tree nodes on 64-bit JVM with compressed oops
+        const val NODE_BYTES = 16L
+        const val CONTAINER_BYTES = 64L
+        const val ENTRY_BYTES = 40L
+        const val STRING_BYTES = 40L
+
+        fun estimateTreeBytes(node: JsonNode): Long =
+            when {
+                node.isObject -> CONTAINER_BYTES + node.fields().asSequence().sumOf { (name, value) -> ENTRY_BYTES + STRING_BYTES + name.length + estimateTreeBytes(value) }
+                node.isArray -> CONTAINER_BYTES + node.sumOf { 4 + estimateTreeBytes(it) }
+                node.isTextual -> NODE_BYTES + STRING_BYTES + node.textValue().length
+                else -> NODE_BYTES
+            }
+    }
+
+    @Volatile
+    private var treeBytes = 0L
+
+    private val node: JsonNode by lazy {
+        jsonMapper.readTree(content).also { treeBytes = estimateTreeBytes(it) }
+    }
+
+    /** Returns read-only view of the content */
+    fun getContent(): ByteBuffer =
+        ByteBuffer.wrap(content).asReadOnlyBuffer()
+
+    /** Returns copy of the content */
+    fun toByteArray(): ByteArray =
+        content.copyOf()
+
+    fun getContentAsString(): String =
+        content.decodeToString()
+
+    fun openStream(): InputStream =
+        ByteArrayInputStream(content)
+
+    fun writeTo(output: OutputStream) =
+        output.write(content)
+
+    /** Returns schema parsed on the first call and shared by all callers, so it must not be modified */
+    fun getNode(): JsonNode =
+        node
+
+    fun getMemoryUsage(): JsonSchemaMemoryUsage =
+        JsonSchemaMemoryUsage(content.size.toLong(), treeBytes)
+
+    override fun toString(): String =
+        "RegisteredJsonSchema(name=$name, size=${content.size})"
+
+}
+
+/**
+ * Registry of JSON Schemas generated for classes annotated with [JsonSchema].
+ * Index is read once, schemas are looked up by name or class without scanning,
+ * and content of each schema is read from the classpath only on its first lookup.
+ */
+class JsonSchemaRegistry @JvmOverloads constructor(
+    private val classLoader: ClassLoader = JsonSchemaRegistry::class.java.classLoader,
+    private val jsonMapper: ObjectMapper = ObjectMapper()
+) {
+
+    private companion object {
+        const val DIRECTORY = "json-schemes"
+    }
+
+    /** Lazily loaded schemas keyed by fully qualified class name, in order of the index */
+    private val schemas: Map<String, Lazy<RegisteredJsonSchema>> by lazy {
+        readResource("index")
+            ?.decodeToString()
+            ?.lineSequence()
+            ?.map { it.trim() }
+            ?.filter { it.isNotEmpty() }
+            ?.associateWith { name -> lazy { RegisteredJsonSchema(name, readResource(name) ?: throw IllegalStateException("Cannot find JSON Schema resource of $name"), jsonMapper) } }
+            ?: emptyMap()
+    }
+
+    /** Returns fully qualified names of classes with generated schemas */
+    fun getNames(): Set<String> =
+        schemas.keys
+
+    fun find(name: String): RegisteredJsonSchema? =
+        schemas[name]?.value
+
+    fun find(type: Class<*>): RegisteredJsonSchema? =
+        find(type.canonicalName ?: type.name)
+
+    /** Returns all schemas, reads content of schemas that haven't been looked up yet */
+    fun getSchemas(): Collection<RegisteredJsonSchema> =
+        schemas.values.map { it.value }
+
+    /** Returns memory retained by schemas loaded so far, keyed by their names */
+    fun getMemoryUsage(): Map<String, JsonSchemaMemoryUsage> =
+        schemas
+            .filterValues { it.isInitialized() }
+            .mapValues { (_, schema) -> schema.value.getMemoryUsage() }
+
+    private fun readResource(name: String): ByteArray? =
+        classLoader.getResourceAsStream("$DIRECTORY/$name")?.use { it.readAllBytes() }
+
+}
@@ -0,0 +1,95 @@
+package io.javalin.openapi
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import java.net.URL
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+
+/** Merges documentation generated separately for each module (jar) on the classpath */
+internal class OpenApiAggregator(private val jsonMapper: ObjectMapper = ObjectMapper()) {
+
+    private data class ModuleDocumentation(
+        val version: String,
+        val source: URL,
+        val document: ObjectNode
+    )
+
+    /** Returns merged documentation of each version found in the given indexes */
+    fun aggregate(indexes: List<URL>): Map<String, ByteArray> {
+        val sources = indexes.flatMap { index ->
+            index.openStream()
+                .use { parseIndex(it.readAllBytes()) }
+                .filter { it.isNotBlank() }
+                .map { version -> version to URL(index, "openapi-$version.json") }
+        }
+
+        val executor = Executors.newFixedThreadPool(sources.size.coerceIn(1, Runtime.getRuntime().availableProcessors())) { runnable ->
+            Thread(runnable, "javalin-openapi-aggregator").also { it.isDaemon = true }
+        }
+
+        val documents = try {
+            sources
+                .map { (version, source) -> CompletableFuture.supplyAsync({ ModuleDocumentation(version, source, readDocument(source)) }, executor) }
+                .map { it.join() }
+        } finally {
+            executor.shutdown()
+        }
+
+        return documents
+            .groupBy { it.version }
+            .mapValues { (version, modules) -> jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(merge(version, modules)) }
+    }
+
+    private fun readDocument(source: URL): ObjectNode =
+        source.openStream().use { jsonMapper.readTree(it) as ObjectNode }
+
+    private fun merge(version: String, modules: List<ModuleDocumentation>): ObjectNode {
+        val merged = modules.first().document.deepCopy()
+        // sources of merged paths and components, used to describe collisions
+        val definedBy = mutableMapOf<String, URL>()
+
+        fun register(target: ObjectNode, key: String, value: JsonNode, location: String, source: URL) {
+            val existing = target.get(key)
+
+            when {
+                existing == null -> target.set<JsonNode>(key, value)
+                existing != value -> throw IllegalStateException("$location of OpenApi documentation '$version' is defined differently in ${definedBy[location]} and $source")
+            }
+
+            definedBy.putIfAbsent(location, source)
+        }
+
+        modules.first().let { first ->
+            merged.get("paths")?.fields()?.forEach { (path, operations) -> operations.fieldNames().forEach { definedBy["Operation ${it.uppercase()} $path"] = first.source } }
+            merged.get("components")?.fields()?.forEach { (section, components) -> components.fieldNames().forEach { definedBy["Component $section/$it"] = first.source } }
+        }
+
+        for (module in modules.drop(1)) {
+            module.document.fields().forEach { (key, value) ->
+                if (!merged.has(key)) {
+                    merged.set<JsonNode>(key, value) // e.g. info or servers of the first module with them are used
+                }
+            }
+
+            val mergedPaths = merged.withObjectProperty("paths")
+
+            module.document.get("paths")?.fields()?.forEach { (path, operations) ->
+                val mergedOperations = mergedPaths.withObjectProperty(path)
+                operations.fields().forEach { (method, operation) -> register(mergedOperations, method, operation, "Operation ${method.uppercase()} $path", module.source) }
+            }
+
+            val mergedComponents = merged.withObjectProperty("components")
+
+            module.document.get("components")?.fields()?.forEach { (section, components) ->
+                val mergedSection = mergedComponents.withObjectProperty(section)
+                // the same shared types are usually generated by many modules, so only different definitions collide
+                components.fields().forEach { (name, component) -> register(mergedSection, name, component, "Component $section/$name", module.source) }
+            }
+        }
+
+        return merged
+    }
+
+}
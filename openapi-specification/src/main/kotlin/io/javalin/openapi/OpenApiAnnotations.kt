@@ -8,6 +8,10 @@ package io.javalin.openapi
 import io.javalin.openapi.HttpMethod.GET
 import io.javalin.openapi.Visibility.PUBLIC
 import java.lang.annotation.Repeatable
+import java.net.URL
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
 import kotlin.annotation.AnnotationRetention.RUNTIME
 import kotlin.annotation.AnnotationTarget.ANNOTATION_CLASS
 import kotlin.annotation.AnnotationTarget.CLASS
@@ -300,7 +304,38 @@ enum class HttpMethod {
     TRACE;
 }
 
-class OpenApiLoader {
+class OpenApiLoader @JvmOverloads constructor(
+    /** External directory with generated documentation, classpath is used if not specified */
+    private val directory: Path? = null,
+    /** Class loader used to find documentation generated for each module on the classpath */
+    private val classLoader: ClassLoader = OpenApiLoader::class.java.classLoader
+) {
+
+    companion object {
+        private const val INDEX_RESOURCE = "openapi-plugin/.index"
+
+        /** Returns directory with generated documentation if classpath is exploded (e.g. in IDE or Gradle's build directory) */
+        @JvmStatic
+        fun findClasspathDirectory(): Path? =
+            OpenApiLoader::class.java.getResource("/openapi-plugin/.index")
+                ?.takeIf { it.protocol == "file" }
+                ?.let { Paths.get(it.toURI()).parent }
+    }
+
+    /** Indexes of all modules on the classpath with generated documentation */
+    private val classpathIndexes: List<URL> by lazy {
+        when (directory) {
+            null -> classLoader.getResources(INDEX_RESOURCE).toList()
+            else -> emptyList()
+        }
+    }
+
+    /** Documentation merged once from all modules on the classpath, or null if there is at most one module with documentation */
+    private val aggregatedDocumentation: Map<String, ByteArray>? by lazy {
+        classpathIndexes
+            .takeIf { it.size > 1 }
+            ?.let { OpenApiAggregator().aggregate(it) }
+    }
 
     fun loadOpenApiSchemes(): Map<String, String> =
         loadVersions()
@@ -308,18 +343,43 @@ class OpenApiLoader {
             .associateWith { loadVersion(it) ?: "{}" }
 
     fun loadVersions(): Set<String> =
-        OpenApiLoader::class.java.getResourceAsStream("/openapi-plugin/.index")
-            ?.readAllBytes()
-            ?.decodeToString()
-            ?.split("\n")
-            ?.asSequence()
-            ?.map { it.trim() }
-            ?.map { it.removePrefix("openapi-") }
-            ?.map { it.removeSuffix(".json") }
-            ?.toSet()
-            ?: emptySet()
+        when {
+            // reading indexes is enough to list versions, documentation is merged only when it's requested
+            classpathIndexes.size > 1 -> classpathIndexes.flatMapTo(linkedSetOf()) { index -> index.openStream().use { parseIndex(it.readAllBytes()) } }
+            else -> readResource(".index")?.let { parseIndex(it) } ?: emptySet()
+        }
 
     fun loadVersion(version: String): String? =
-        OpenApiLoader::class.java.getResource("/openapi-plugin/openapi-$version.json")?.readText()
+        loadVersionBytes(version)?.decodeToString()
+
+    /** Loads generated documentation without decoding it, so it can be served as it is */
+    fun loadVersionBytes(version: String): ByteArray? =
+        when (val aggregated = aggregatedDocumentation) {
+            null -> readResource("openapi-$version.json")
+            else -> aggregated[version]
+        }
+
+    /** Loads JSON Patch between versions generated by annotation processor, null if it's not available or documentation is merged from many modules */
+    fun loadVersionDiff(sourceVersion: String, targetVersion: String): ByteArray? =
+        when (aggregatedDocumentation) {
+            null -> readResource(OpenApiDiff.getDiffResourceName(sourceVersion, targetVersion))
+            else -> null
+        }
+
+    private fun readResource(name: String): ByteArray? =
+        when (directory) {
+            null -> classLoader.getResourceAsStream("openapi-plugin/$name")?.use { it.readAllBytes() }
+            else -> directory.resolve(name).takeIf { Files.isRegularFile(it) }?.let { Files.readAllBytes(it) }
+        }
 
 }
+
+internal fun parseIndex(index: ByteArray): Set<String> =
+    index
+        .decodeToString()
+        .split("\n")
+        .asSequence()
+        .map { it.trim() }
+        .map { it.removePrefix("openapi-") }
+        .map { it.removeSuffix(".json") }
+        .toSet()
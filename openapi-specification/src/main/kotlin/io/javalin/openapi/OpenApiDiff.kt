@@ -0,0 +1,69 @@
+package io.javalin.openapi
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ArrayNode
+
+/**
+ * Computes RFC 6902 JSON Patch that transforms one version of OpenApi documentation into another.
+ * Objects such as paths, path items and components are compared by their names,
+ * so the size of the patch and the cost of the diff depend on the changed parts of the documentation only.
+ */
+class OpenApiDiff @JvmOverloads constructor(private val jsonMapper: ObjectMapper = ObjectMapper()) {
+
+    companion object {
+        /** Media type of JSON Patch documents */
+        const val JSON_PATCH_CONTENT_TYPE = "application/json-patch+json"
+
+        /** Location of patch generated by annotation processor, relative to `openapi-plugin` directory */
+        @JvmStatic
+        fun getDiffResourceName(sourceVersion: String, targetVersion: String): String =
+            "diff/$sourceVersion/$targetVersion.json"
+
+        private fun escape(name: String): String =
+            name.replace("~", "~0").replace("/", "~1")
+    }
+
+    /** Returns JSON Patch document as JSON */
+    @JvmOverloads
+    fun diff(source: ByteArray, target: ByteArray, prettyOutputEnabled: Boolean = true): ByteArray =
+        diff(jsonMapper.readTree(source), jsonMapper.readTree(target)).let {
+            when {
+                prettyOutputEnabled -> jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(it)
+                else -> jsonMapper.writeValueAsBytes(it)
+            }
+        }
+
+    /** Returns JSON Patch operations, empty if both documents are equal */
+    fun diff(source: JsonNode, target: JsonNode): ArrayNode =
+        jsonMapper.createArrayNode().also { diff("", source, target, it) }
+
+    private fun diff(pointer: String, source: JsonNode, target: JsonNode, patch: ArrayNode) {
+        when {
+            source.isObject && target.isObject -> {
+                source.fields().forEach { (name, sourceValue) ->
+                    val targetValue = target.get(name)
+
+                    when (targetValue) {
+                        null -> patch.addObject().put("op", "remove").put("path", "$pointer/${escape(name)}")
+                        else -> diff("$pointer/${escape(name)}", sourceValue, targetValue, patch)
+                    }
+                }
+
+                target.fields().forEach { (name, targetValue) ->
+                    if (!source.has(name)) {
+                        patch.addObject().put("op", "add").put("path", "$pointer/${escape(name)}").set<JsonNode>("value", targetValue)
+                    }
+                }
+            }
+            // arrays in OpenApi documents are short (tags, parameters, required properties), elements are compared by position only
+            source.isArray && target.isArray && source.size() == target.size() ->
+                for (index in 0 until source.size()) {
+                    diff("$pointer/$index", source.get(index), target.get(index), patch)
+                }
+            source != target ->
+                patch.addObject().put("op", "replace").put("path", pointer).set<JsonNode>("value", target)
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.javalin.openapi
+
+import io.javalin.util.JavalinLogger
+import java.io.Closeable
+import java.nio.file.ClosedWatchServiceException
+import java.nio.file.Path
+import java.nio.file.StandardWatchEventKinds.ENTRY_CREATE
+import java.nio.file.StandardWatchEventKinds.ENTRY_DELETE
+import java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY
+import java.util.function.Consumer
+
+/** Notifies listener about changed files in the directory with generated OpenApi documentation */
+class OpenApiDirectoryWatcher(
+    private val directory: Path,
+    /** Receives name of the changed file, e.g. `.index` or `openapi-v1.json` */
+    private val listener: Consumer<String>
+) : Closeable {
+
+    private val watchService = directory.fileSystem.newWatchService()
+    private val thread = Thread({ watch() }, "javalin-openapi-watcher").also { it.isDaemon = true }
+
+    fun start(): OpenApiDirectoryWatcher = also {
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE)
+        thread.start()
+    }
+
+    private fun watch() {
+        try {
+            while (true) {
+                val key = watchService.take()
+
+                key.pollEvents()
+                    .mapNotNull { it.context() as? Path }
+                    .map { it.fileName.toString() }
+                    .distinct()
+                    .forEach { fileName ->
+                        // file might be still written, the following event will retry,
+                        // listeners publish new documentation only if it's valid, so the previous one is served in the meantime
+                        runCatching { listener.accept(fileName) }
+                            .onFailure { JavalinLogger.warn("Cannot reload OpenApi documentation after change of '$fileName' in $directory, previous documentation is still served", it) }
+                    }
+
+                if (!key.reset()) {
+                    return
+                }
+            }
+        } catch (closed: ClosedWatchServiceException) {
+            // watcher has been closed
+        } catch (interrupted: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    override fun close() {
+        watchService.close()
+    }
+
+}
@@ -0,0 +1,378 @@
+package io.javalin.openapi.data
+
+import com.fasterxml.jackson.databind.JavaType
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ArrayNode
+import com.fasterxml.jackson.databind.node.ObjectNode
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import io.javalin.http.HttpStatus
+import io.javalin.openapi.ContentType.AUTODETECT
+import io.javalin.openapi.ContentType.FORM_DATA_MULTIPART
+import io.javalin.openapi.ContentType.FORM_DATA_URL_ENCODED
+import io.javalin.openapi.HttpMethod
+import io.javalin.openapi.NULL_CLASS
+import io.javalin.openapi.NULL_STRING
+import io.javalin.openapi.OpenApiContent
+import io.javalin.openapi.OpenApiName
+import io.javalin.openapi.OpenApiOperation.AUTO_GENERATE
+import io.javalin.openapi.OpenApiParam
+import io.javalin.openapi.OpenApiRequestBody
+import io.javalin.openapi.OpenApiResponse
+import io.javalin.openapi.experimental.defaults.createDefaultSimpleTypeMappings
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Renders [OpenApiDocumentation] registered at runtime (e.g. for dynamically registered routes) into documentation generated at compile time.
+ * Rendered documents are kept, so registration of another route rebuilds only its path item and components it introduces.
+ */
+class OpenApiDocumentationEngine @JvmOverloads constructor(
+    private val prettyOutputEnabled: Boolean = true,
+    private val jsonMapper: ObjectMapper = jacksonObjectMapper()
+) {
+
+    private val documentations = mutableListOf<OpenApiDocumentation>()
+    private val renderedVersions = mutableMapOf<String, ObjectNode>()
+    private val schemaGenerator = RuntimeSchemaGenerator(jsonMapper)
+
+    /** Versions described by registered documentation */
+    @Synchronized
+    fun getVersions(): Set<String> =
+        documentations.flatMapTo(linkedSetOf()) { it.getVersions() }
+
+    /** Checks if the version is rendered, so it's going to be updated incrementally */
+    @Synchronized
+    fun isRendered(version: String): Boolean =
+        version in renderedVersions
+
+    /** Merges registered documentation of the given version into the document, the result is kept for incremental updates */
+    @Synchronized
+    fun render(version: String, document: ByteArray): ByteArray {
+        val relevant = documentations.filter { version in it.getVersions() }
+
+        if (relevant.isEmpty()) {
+            renderedVersions.remove(version)
+            return document
+        }
+
+        val tree = (jsonMapper.readTree(document) as? ObjectNode) ?: jsonMapper.createObjectNode()
+        tree.putIfAbsent("openapi", tree.textNode("3.0.3"))
+        tree.putIfAbsent("info", jsonMapper.createObjectNode().put("title", "").put("version", ""))
+
+        relevant.forEach { applyDocumentation(tree, it) }
+        renderedVersions[version] = tree
+        return write(tree)
+    }
+
+    /** Registers documentation and returns updated documents of already rendered versions it belongs to */
+    @Synchronized
+    fun register(documentation: OpenApiDocumentation): Map<String, ByteArray> {
+        documentations.add(documentation)
+
+        return documentation.getVersions()
+            .mapNotNull { version -> renderedVersions[version]?.let { tree -> version to tree } }
+            .associate { (version, tree) ->
+                applyDocumentation(tree, documentation)
+                version to write(tree)
+            }
+    }
+
+    private fun OpenApiDocumentation.getVersions(): List<String> =
+        state.versions.takeUnless { state.ignore == true } ?: emptyList()
+
+    private fun write(tree: ObjectNode): ByteArray =
+        when {
+            prettyOutputEnabled -> jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(tree)
+            else -> jsonMapper.writeValueAsBytes(tree)
+        }
+
+    private fun applyDocumentation(tree: ObjectNode, documentation: OpenApiDocumentation) {
+        val state = documentation.state
+        val path = state.path?.let { if (it.startsWith("/")) it else "/$it" } ?: return
+        val references = mutableSetOf<Class<*>>()
+        val pathItem = tree.withObjectProperty("paths").withObjectProperty(path)
+
+        for (method in (state.methods ?: listOf(HttpMethod.GET)).sortedBy { it.name }) {
+            pathItem.set<ObjectNode>(method.name.lowercase(), createOperation(path, method, state, references))
+        }
+
+        // only components missing in the document are generated, schemas of types are memoized anyway
+        val schemas = tree.withObjectProperty("components").withObjectProperty("schemas")
+        val pending = ArrayDeque(references)
+
+        while (pending.isNotEmpty()) {
+            val component = schemaGenerator.getComponent(pending.removeFirst())
+
+            if (!schemas.has(component.name)) {
+                schemas.set<ObjectNode>(component.name, component.schema.deepCopy())
+                pending.addAll(component.references)
+            }
+        }
+    }
+
+    private fun createOperation(path: String, method: HttpMethod, state: OpenApiDocumentation.DocumentationState, references: MutableSet<Class<*>>): ObjectNode {
+        val operation = jsonMapper.createObjectNode()
+        operation.set<ArrayNode>("tags", jsonMapper.valueToTree(state.tags ?: emptyList<String>()))
+        state.summary?.takeIf { it != NULL_STRING }?.let { operation.put("summary", it) }
+        state.description?.takeIf { it != NULL_STRING }?.let { operation.put("description", it) }
+        state.operationId?.takeIf { it != NULL_STRING }?.let { operation.put("operationId", if (it == AUTO_GENERATE) generateOperationId(method, path) else it) }
+
+        val parameters = operation.putArray("parameters")
+        state.cookies?.forEach { parameters.add(createParameter("cookie", it, references)) }
+        state.headers?.forEach { parameters.add(createParameter("header", it, references)) }
+        state.pathParams?.forEach { parameters.add(createParameter("path", it, references)) }
+        state.queryParams?.forEach { parameters.add(createParameter("query", it, references)) }
+
+        state.requestBody?.let { operation.set<ObjectNode>("requestBody", createRequestBody(it, references)) }
+        state.formParams?.takeIf { it.isNotEmpty() }?.let { addFormRequestBody(operation, it, references) }
+        operation.set<ObjectNode>("responses", createResponses(state.responses ?: emptyList(), references))
+
+        state.callbacks?.takeIf { it.isNotEmpty() }?.let { callbacks ->
+            val callbacksNode = operation.putObject("callbacks")
+
+            callbacks.forEach { callback ->
+                val callbackOperation = callbacksNode
+                    .putObject(callback.name)
+                    .putObject(callback.url)
+                    .putObject(callback.method.name.lowercase())
+
+                callback.summary.takeIf { it != NULL_STRING }?.let { callbackOperation.put("summary", it) }
+                callback.description.takeIf { it != NULL_STRING }?.let { callbackOperation.put("description", it) }
+                callbackOperation.set<ObjectNode>("requestBody", createRequestBody(callback.requestBody, references))
+                callbackOperation.set<ObjectNode>("responses", createResponses(callback.responses.toList(), references))
+            }
+        }
+
+        operation.put("deprecated", state.deprecated ?: false)
+
+        val security = operation.putArray("security")
+        state.security?.sortedBy { it.name }?.forEach { security.addObject().set<ArrayNode>(it.name, jsonMapper.valueToTree(it.scopes)) }
+
+        return operation
+    }
+
+    private fun createParameter(`in`: String?, parameter: OpenApiParam, references: MutableSet<Class<*>>): ObjectNode {
+        val node = jsonMapper.createObjectNode()
+
+        if (`in` != null) {
+            node.put("name", parameter.name)
+            node.put("in", `in`)
+        }
+
+        parameter.description.takeIf { it != NULL_STRING }?.let { node.put("description", it) }
+
+        if (`in` != null || parameter.required) node.put("required", parameter.required)
+        if (`in` != null || parameter.deprecated) node.put("deprecated", parameter.deprecated)
+        if (`in` != null || parameter.allowEmptyValue) node.put("allowEmptyValue", parameter.allowEmptyValue)
+
+        val schema = schemaGenerator.createSchema(jsonMapper.constructType(parameter.type.java), references)
+        parameter.example.takeIf { it.isNotEmpty() }?.let { schema.put("example", it) }
+        node.set<ObjectNode>("schema", schema)
+        return node
+    }
+
+    private fun createRequestBody(requestBody: OpenApiRequestBody, references: MutableSet<Class<*>>): ObjectNode {
+        val node = jsonMapper.createObjectNode()
+        requestBody.description.takeIf { it != NULL_STRING }?.let { node.put("description", it) }
+        createContent(requestBody.content, references)?.let { node.set<ObjectNode>("content", it) }
+        node.put("required", requestBody.required)
+        return node
+    }
+
+    /** OpenApi 3 describes form parameters as properties of request body, files are sent as multipart forms */
+    private fun addFormRequestBody(operation: ObjectNode, formParams: List<OpenApiParam>, references: MutableSet<Class<*>>) {
+        val schema = jsonMapper.createObjectNode().put("type", "object")
+        val properties = schema.putObject("properties")
+        val required = formParams.filter { it.required }.map { it.name }
+
+        for (formParam in formParams) {
+            val property = schemaGenerator.createSchema(jsonMapper.constructType(formParam.type.java), references)
+            formParam.description.takeIf { it != NULL_STRING }?.let { property.put("description", it) }
+            formParam.example.takeIf { it.isNotEmpty() }?.let { property.put("example", it) }
+            if (formParam.deprecated) property.put("deprecated", true)
+            properties.set<ObjectNode>(formParam.name, property)
+        }
+
+        if (required.isNotEmpty()) {
+            schema.set<ArrayNode>("required", jsonMapper.valueToTree(required))
+        }
+
+        val mediaType = when {
+            properties.any { it.path("format").asText() == "binary" || it.path("items").path("format").asText() == "binary" } -> FORM_DATA_MULTIPART
+            else -> FORM_DATA_URL_ENCODED
+        }
+
+        // form declared by request body takes precedence over the one generated from form parameters
+        val requestBody = operation.withObjectProperty("requestBody")
+        requestBody.withObjectProperty("content").putIfAbsent(mediaType, jsonMapper.createObjectNode().set<ObjectNode>("schema", schema))
+        requestBody.put("required", requestBody.path("required").asBoolean() || required.isNotEmpty())
+    }
+
+    private fun createResponses(responses: List<OpenApiResponse>, references: MutableSet<Class<*>>): ObjectNode {
+        val node = jsonMapper.createObjectNode()
+
+        for (response in responses.sortedBy { it.status }) {
+            val responseNode = node.putObject(response.status)
+
+            val description = response.description
+                .takeIf { it != NULL_STRING }
+                ?: response.status.toIntOrNull()?.let { HttpStatus.forStatus(it) }?.message
+
+            description?.let { responseNode.put("description", it) }
+            createContent(response.content, references)?.let { responseNode.set<ObjectNode>("content", it) }
+
+            if (response.headers.isNotEmpty()) {
+                val headers = responseNode.putObject("headers")
+                response.headers.forEach { headers.set<ObjectNode>(it.name, createParameter(null, it, references)) }
+            }
+        }
+
+        return node
+    }
+
+    private fun createContent(contents: Array<OpenApiContent>, references: MutableSet<Class<*>>): ObjectNode? {
+        val mediaTypes = sortedMapOf<String, ObjectNode>()
+
+        for (content in contents) {
+            val from = content.from.java.takeIf { it != NULL_CLASS::class.java }
+            var type = content.type.takeIf { it != NULL_STRING }
+            val mimeType = content.mimeType.takeIf { it != AUTODETECT }
+                ?: when (from) {
+                    // use 'type' as mime type if there's no other mime type declaration, just like the annotation processor
+                    null -> type.also { type = null }
+                    else -> detectContentType(from)
+                }
+                ?: continue
+
+            val schema = when {
+                content.properties.isNotEmpty() -> jsonMapper.createObjectNode().also { schema ->
+                    schema.put("type", "object")
+                    val properties = schema.putObject("properties")
+
+                    for (property in content.properties) {
+                        val propertyFrom = property.from.java.takeIf { it != NULL_CLASS::class.java }
+                        val propertySchema = when (propertyFrom) {
+                            null -> jsonMapper.createObjectNode().put("type", property.type).also { node ->
+                                property.format.takeIf { it != NULL_STRING }?.let { node.put("format", it) }
+                            }
+                            else -> schemaGenerator.createSchema(jsonMapper.constructType(propertyFrom), references)
+                        }
+
+                        properties.set<ObjectNode>(property.name, when {
+                            property.isArray -> jsonMapper.createObjectNode().put("type", "array").set<ObjectNode>("items", propertySchema)
+                            else -> propertySchema
+                        })
+                    }
+                }
+                from != null -> schemaGenerator.createSchema(jsonMapper.constructType(from), references)
+                else -> jsonMapper.createObjectNode().also { schema ->
+                    type?.let { schema.put("type", it) }
+                    content.format.takeIf { it != NULL_STRING }?.let { schema.put("format", it) }
+                }
+            }
+
+            val mediaType = jsonMapper.createObjectNode()
+            if (schema.size() > 0) mediaType.set<ObjectNode>("schema", schema)
+            content.example.takeIf { it != NULL_STRING }?.let { mediaType.put("example", it) }
+            mediaTypes[mimeType] = mediaType
+        }
+
+        return mediaTypes
+            .takeIf { it.isNotEmpty() }
+            ?.let { jsonMapper.createObjectNode().setAll<ObjectNode>(it) }
+    }
+
+    private fun detectContentType(type: Class<*>): String =
+        when {
+            type == ByteArray::class.java || type == java.io.File::class.java -> "application/octet-stream"
+            type == String::class.java -> "text/plain"
+            else -> "application/json"
+        }
+
+    private fun generateOperationId(method: HttpMethod, path: String): String =
+        method.name.lowercase() + path
+            .split('/')
+            .joinToString(separator = "") { pathPart ->
+                when {
+                    pathPart.startsWith('{') || pathPart.startsWith('<') -> "By" + pathPart.drop(1).dropLast(1).split('-').joinToString(separator = "") { it.capitalise() }
+                    else -> pathPart.split('-').joinToString(separator = "") { it.capitalise() }
+                }
+            }
+
+    private fun String.capitalise(): String =
+        replaceFirstChar { it.titlecase() }
+
+}
+
+/** Reflective counterpart of the type schema generator used by the annotation processor */
+internal class RuntimeSchemaGenerator(private val jsonMapper: ObjectMapper) {
+
+    class ComponentSchema(
+        val name: String,
+        val schema: ObjectNode,
+        /** Types referenced by the schema, that also have to be available as components */
+        val references: Set<Class<*>>
+    )
+
+    private val simpleTypeMappings = createDefaultSimpleTypeMappings()
+    private val components = ConcurrentHashMap<Class<*>, ComponentSchema>()
+
+    /** Creates schema of embedded type, types described as components are added to [references] */
+    fun createSchema(type: JavaType, references: MutableSet<Class<*>>): ObjectNode {
+        val rawClass = type.rawClass
+        val schema = jsonMapper.createObjectNode()
+
+        rawClass.canonicalName?.let { simpleTypeMappings[it] }?.let { simpleType ->
+            schema.put("type", simpleType.type)
+            simpleType.format?.let { schema.put("format", it) }
+            return schema
+        }
+
+        return when {
+            type.isArrayType || type.isCollectionLikeType -> schema
+                .put("type", "array")
+                .set<ObjectNode>("items", createSchema(type.contentType, references))
+            type.isMapLikeType -> schema
+                .put("type", "object")
+                .set<ObjectNode>("additionalProperties", createSchema(type.contentType, references))
+            type.isEnumType -> schema
+                .put("type", "string")
+                .also { enumSchema -> enumSchema.putArray("enum").also { values -> rawClass.enumConstants.forEach { values.add((it as Enum<*>).name) } } }
+            else -> {
+                references.add(rawClass)
+                schema.put("\$ref", "#/components/schemas/${getComponentName(rawClass)}")
+            }
+        }
+    }
+
+    /** Returns schema of the type described as a component, generated once per class */
+    fun getComponent(type: Class<*>): ComponentSchema =
+        components.computeIfAbsent(type) { createComponent(it) }
+
+    private fun createComponent(type: Class<*>): ComponentSchema {
+        val references = mutableSetOf<Class<*>>()
+        val schema = jsonMapper.createObjectNode().put("type", "object")
+        val properties = schema.putObject("properties")
+        val required = jsonMapper.createArrayNode()
+
+        jsonMapper.serializationConfig
+            .introspect(jsonMapper.constructType(type))
+            .findProperties()
+            .forEach { property ->
+                properties.set<ObjectNode>(property.name, createSchema(property.primaryType, references))
+
+                if (property.isRequired) {
+                    required.add(property.name)
+                }
+            }
+
+        if (!required.isEmpty) {
+            schema.set<ArrayNode>("required", required)
+        }
+
+        return ComponentSchema(getComponentName(type), schema, references)
+    }
+
+    private fun getComponentName(type: Class<*>): String =
+        type.getAnnotation(OpenApiName::class.java)?.value ?: type.simpleName
+
+}
@@ -6,6 +6,7 @@ import io.javalin.openapi.experimental.defaults.CompositionEmbeddedTypeProcessor
 import io.javalin.openapi.experimental.defaults.DictionaryEmbeddedTypeProcessor
 import io.javalin.openapi.experimental.defaults.createDefaultSimpleTypeMappings
 import io.javalin.openapi.experimental.processor.generators.PropertyComposition
+import java.util.function.BiConsumer
 import javax.lang.model.element.Element
 import kotlin.annotation.AnnotationRetention.BINARY
 import kotlin.annotation.AnnotationTarget.CLASS
@@ -30,6 +31,10 @@ class OpenApiAnnotationProcessorConfiguration {
     var debug: Boolean = false
     var validateWithParser: Boolean = true
     var propertyInSchemeFilter: PropertyInSchemeFilter? = null
+    /** Static definition of each documentation version, written directly into the generated documentation */
+    var definitionConfiguration: BiConsumer<String, OpenApiDefinitionConfiguration>? = null
+    /** Generate JSON Patch between each pair of adjacent versions */
+    var versionDiffsEnabled: Boolean = false
     val simpleTypeMappings: MutableMap<String, SimpleType> = createDefaultSimpleTypeMappings()
     val embeddedTypeProcessors: MutableList<EmbeddedTypeProcessor> = mutableListOf(
         CompositionEmbeddedTypeProcessor(),
@@ -41,6 +46,16 @@ class OpenApiAnnotationProcessorConfiguration {
         embeddedTypeProcessors.add(0, embeddedTypeProcessor)
     }
 
+    fun withDefinitionConfiguration(definitionConfiguration: BiConsumer<String, OpenApiDefinitionConfiguration>): OpenApiAnnotationProcessorConfiguration = also {
+        this.definitionConfiguration = definitionConfiguration
+    }
+
+    /** Versions are adjacent in order of their first occurrence in the sources, patches are served by OpenApi plugin for `?v=<next>&diffFrom=<previous>` */
+    @JvmOverloads
+    fun withVersionDiffs(enabled: Boolean = true): OpenApiAnnotationProcessorConfiguration = also {
+        this.versionDiffsEnabled = enabled
+    }
+
 }
 
 fun interface PropertyInSchemeFilter {
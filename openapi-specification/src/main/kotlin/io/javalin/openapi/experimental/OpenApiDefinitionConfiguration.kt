@@ -0,0 +1,38 @@
+package io.javalin.openapi.experimental
+
+import io.javalin.openapi.OpenApiInfo
+import io.javalin.openapi.OpenApiServer
+import io.javalin.openapi.Security
+import io.javalin.openapi.SecurityScheme
+import java.util.function.Consumer
+
+/**
+ * Static part of the definition written by the annotation processor directly into the generated documentation,
+ * so the OpenApi plugin doesn't have to rewrite it at runtime.
+ */
+class OpenApiDefinitionConfiguration {
+    var info: OpenApiInfo? = null
+    val servers: MutableList<OpenApiServer> = mutableListOf()
+    val securitySchemes: MutableMap<String, SecurityScheme> = linkedMapOf()
+    val globalSecurity: MutableList<Security> = mutableListOf()
+
+    /** Define custom info object, merged with title and version passed as processor options */
+    fun withInfo(openApiInfo: Consumer<OpenApiInfo>): OpenApiDefinitionConfiguration = also {
+        this.info = OpenApiInfo().also { openApiInfo.accept(it) }
+    }
+
+    /** Add custom server */
+    fun withServer(serverConfigurer: Consumer<OpenApiServer>): OpenApiDefinitionConfiguration = also {
+        this.servers.add(OpenApiServer().also { serverConfigurer.accept(it) })
+    }
+
+    fun withSecurityScheme(schemeName: String, securityScheme: SecurityScheme): OpenApiDefinitionConfiguration = also {
+        this.securitySchemes[schemeName] = securityScheme
+    }
+
+    @JvmOverloads
+    fun withGlobalSecurity(name: String, security: Consumer<Security> = Consumer {}): OpenApiDefinitionConfiguration = also {
+        this.globalSecurity.add(Security(name = name).also { security.accept(it) })
+    }
+
+}
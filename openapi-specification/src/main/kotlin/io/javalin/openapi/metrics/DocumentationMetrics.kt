@@ -0,0 +1,215 @@
+package io.javalin.openapi.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/** Implemented by plugins that collect statistics of served documentation */
+interface DocumentationMetricsProvider {
+    fun getMetrics(): DocumentationMetrics
+}
+
+/** Receives events recorded by [DocumentationMetrics], e.g. to publish them in external monitoring system */
+interface DocumentationMetricsListener {
+    fun onRequest(metrics: DocumentationMetrics, route: String, version: String?, bytes: Long, durationNanos: Long) {}
+    fun onCacheAccess(metrics: DocumentationMetrics, cache: String, hit: Boolean) {}
+    fun onPreparation(metrics: DocumentationMetrics, version: String, durationNanos: Long) {}
+    fun onRetainedBytes(metrics: DocumentationMetrics, version: String?, variant: String, bytes: Long) {}
+}
+
+/** Dependency-free, thread-safe recorder of documentation plugin statistics */
+class DocumentationMetrics(
+    /** Name of the plugin, e.g. `openapi` or `swagger` */
+    val plugin: String
+) {
+
+    private data class RequestKey(val route: String, val version: String?)
+    private data class RetainedKey(val version: String?, val variant: String)
+
+    private class RequestRecorder {
+        val count = LongAdder()
+        val bytes = LongAdder()
+        val latency = LatencyHistogram()
+    }
+
+    private class CacheRecorder {
+        val hits = LongAdder()
+        val misses = LongAdder()
+    }
+
+    private class PreparationRecorder {
+        val count = LongAdder()
+        val totalNanos = LongAdder()
+        @Volatile var lastNanos = 0L
+    }
+
+    private val requests = ConcurrentHashMap<RequestKey, RequestRecorder>()
+    private val caches = ConcurrentHashMap<String, CacheRecorder>()
+    private val preparations = ConcurrentHashMap<String, PreparationRecorder>()
+    private val retainedBytes = ConcurrentHashMap<RetainedKey, Long>()
+    private val listeners = CopyOnWriteArrayList<DocumentationMetricsListener>()
+
+    fun addListener(listener: DocumentationMetricsListener): DocumentationMetrics = also {
+        listeners.add(listener)
+    }
+
+    /** Records served request, [route] describes kind of the served content, e.g. `documentation` or `webjar` */
+    fun recordRequest(route: String, version: String?, bytes: Long, durationNanos: Long) {
+        val recorder = requests.computeIfAbsent(RequestKey(route, version)) { RequestRecorder() }
+        recorder.count.increment()
+        recorder.bytes.add(bytes)
+        recorder.latency.record(durationNanos)
+        listeners.forEach { it.onRequest(this, route, version, bytes, durationNanos) }
+    }
+
+    fun recordCacheAccess(cache: String, hit: Boolean) {
+        val recorder = caches.computeIfAbsent(cache) { CacheRecorder() }
+        if (hit) recorder.hits.increment() else recorder.misses.increment()
+        listeners.forEach { it.onCacheAccess(this, cache, hit) }
+    }
+
+    fun recordPreparation(version: String, durationNanos: Long) {
+        val recorder = preparations.computeIfAbsent(version) { PreparationRecorder() }
+        recorder.count.increment()
+        recorder.totalNanos.add(durationNanos)
+        recorder.lastNanos = durationNanos
+        listeners.forEach { it.onPreparation(this, version, durationNanos) }
+    }
+
+    /** Replaces amount of memory retained by given variant of content, e.g. `json+gzip` of the `v1` documentation */
+    fun recordRetainedBytes(version: String?, variant: String, bytes: Long) {
+        retainedBytes[RetainedKey(version, variant)] = bytes
+        listeners.forEach { it.onRetainedBytes(this, version, variant, bytes) }
+    }
+
+    /** Forgets retained variants of the version that is no longer served */
+    fun removeRetainedBytes(version: String?) {
+        retainedBytes.keys.filter { it.version == version }.forEach { key ->
+            retainedBytes.remove(key)
+            listeners.forEach { it.onRetainedBytes(this, key.version, key.variant, 0) }
+        }
+    }
+
+    fun getRetainedBytes(version: String?, variant: String): Long =
+        retainedBytes[RetainedKey(version, variant)] ?: 0
+
+    fun getCacheStatistics(cache: String): CacheStatistics =
+        caches[cache]
+            ?.let { CacheStatistics(cache, it.hits.sum(), it.misses.sum()) }
+            ?: CacheStatistics(cache, 0, 0)
+
+    fun snapshot(): DocumentationMetricsSnapshot =
+        DocumentationMetricsSnapshot(
+            plugin = plugin,
+            requests = requests.map { (key, recorder) ->
+                RequestStatistics(
+                    route = key.route,
+                    version = key.version,
+                    count = recorder.count.sum(),
+                    bytes = recorder.bytes.sum(),
+                    latency = recorder.latency.snapshot()
+                )
+            },
+            caches = caches.map { (cache, recorder) ->
+                CacheStatistics(
+                    cache = cache,
+                    hits = recorder.hits.sum(),
+                    misses = recorder.misses.sum()
+                )
+            },
+            preparations = preparations.map { (version, recorder) ->
+                PreparationStatistics(
+                    version = version,
+                    count = recorder.count.sum(),
+                    lastDurationNanos = recorder.lastNanos,
+                    totalDurationNanos = recorder.totalNanos.sum()
+                )
+            },
+            retainedBytes = retainedBytes.map { (key, bytes) ->
+                RetainedBytesStatistics(
+                    version = key.version,
+                    variant = key.variant,
+                    bytes = bytes
+                )
+            }
+        )
+
+}
+
+data class DocumentationMetricsSnapshot(
+    val plugin: String,
+    val requests: List<RequestStatistics>,
+    val caches: List<CacheStatistics>,
+    val preparations: List<PreparationStatistics>,
+    val retainedBytes: List<RetainedBytesStatistics>
+)
+
+data class RequestStatistics(
+    val route: String,
+    val version: String?,
+    val count: Long,
+    val bytes: Long,
+    val latency: LatencyStatistics
+)
+
+data class LatencyStatistics(
+    /** Inclusive upper bounds of histogram buckets in microseconds, the last bucket is unbounded */
+    val bucketBoundsMicros: List<Long>,
+    val bucketCounts: List<Long>,
+    val totalNanos: Long,
+    val maxNanos: Long
+)
+
+data class CacheStatistics(
+    val cache: String,
+    val hits: Long,
+    val misses: Long
+) {
+    val hitRatio: Double
+        get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+}
+
+data class PreparationStatistics(
+    val version: String,
+    val count: Long,
+    val lastDurationNanos: Long,
+    val totalDurationNanos: Long
+)
+
+data class RetainedBytesStatistics(
+    val version: String?,
+    val variant: String,
+    val bytes: Long
+)
+
+/** Fixed-bucket histogram, so recording doesn't allocate */
+private class LatencyHistogram {
+
+    private companion object {
+        val BUCKET_BOUNDS_MICROS = listOf<Long>(100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000)
+    }
+
+    private val counts = AtomicLongArray(BUCKET_BOUNDS_MICROS.size + 1)
+    private val totalNanos = LongAdder()
+    private val maxNanos = AtomicLong()
+
+    fun record(durationNanos: Long) {
+        val micros = TimeUnit.NANOSECONDS.toMicros(durationNanos)
+        val bucket = BUCKET_BOUNDS_MICROS.indexOfFirst { micros <= it }.takeIf { it != -1 } ?: BUCKET_BOUNDS_MICROS.size
+        counts.incrementAndGet(bucket)
+        totalNanos.add(durationNanos)
+        maxNanos.accumulateAndGet(durationNanos) { current, recorded -> maxOf(current, recorded) }
+    }
+
+    fun snapshot(): LatencyStatistics =
+        LatencyStatistics(
+            bucketBoundsMicros = BUCKET_BOUNDS_MICROS,
+            bucketCounts = (0 until counts.length()).map { counts.get(it) },
+            totalNanos = totalNanos.sum(),
+            maxNanos = maxNanos.get()
+        )
+
+}
@@ -0,0 +1,48 @@
+package io.javalin.openapi.metrics
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.javalin.http.ContentType
+import io.javalin.http.Context
+import io.javalin.http.Handler
+import io.javalin.http.Header
+
+/** Serves snapshot of [DocumentationMetrics] as JSON */
+class DocumentationMetricsHandler(private val metrics: DocumentationMetrics) : Handler {
+
+    private val jsonMapper = ObjectMapper()
+
+    override fun handle(context: Context) {
+        context
+            .contentType(ContentType.APPLICATION_JSON)
+            .header(Header.CACHE_CONTROL, "no-store")
+            .result(jsonMapper.writeValueAsBytes(metrics.snapshot()))
+    }
+
+}
+
+/** Handler that reports how many bytes of the response body it has written, so it can be wrapped in [MeasuredHandler] */
+interface MeasurableHandler : Handler {
+
+    /** Handles the request, returns number of bytes written to the response body */
+    fun serve(context: Context): Long
+
+    override fun handle(context: Context) {
+        serve(context)
+    }
+
+}
+
+/** Records requests handled by the given handler in [DocumentationMetrics] */
+class MeasuredHandler(
+    private val metrics: DocumentationMetrics,
+    private val route: String,
+    private val handler: MeasurableHandler
+) : Handler {
+
+    override fun handle(context: Context) {
+        val start = System.nanoTime()
+        val bytes = handler.serve(context)
+        metrics.recordRequest(route, null, bytes, System.nanoTime() - start)
+    }
+
+}
@@ -0,0 +1,55 @@
+package io.javalin.openapi.metrics
+
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Tags
+import java.util.concurrent.TimeUnit
+
+/**
+ * Publishes [DocumentationMetrics] to Micrometer [MeterRegistry].
+ * Requires `io.micrometer:micrometer-core` on the classpath, other classes of this package don't depend on it.
+ */
+class MicrometerDocumentationMetrics(private val registry: MeterRegistry) : DocumentationMetricsListener {
+
+    companion object {
+        private const val NO_VERSION = "none"
+
+        @JvmStatic
+        fun bindTo(registry: MeterRegistry, vararg providers: DocumentationMetricsProvider): MicrometerDocumentationMetrics =
+            MicrometerDocumentationMetrics(registry).also { adapter ->
+                providers.forEach { adapter.bind(it.getMetrics()) }
+            }
+    }
+
+    fun bind(metrics: DocumentationMetrics): MicrometerDocumentationMetrics = also {
+        metrics.addListener(this)
+        metrics.snapshot().retainedBytes.forEach { registerRetainedBytes(metrics, it.version, it.variant) }
+    }
+
+    override fun onRequest(metrics: DocumentationMetrics, route: String, version: String?, bytes: Long, durationNanos: Long) {
+        val tags = Tags.of("plugin", metrics.plugin, "route", route, "version", version ?: NO_VERSION)
+        registry.timer("javalin.openapi.requests", tags).record(durationNanos, TimeUnit.NANOSECONDS)
+        registry.summary("javalin.openapi.response.bytes", tags).record(bytes.toDouble())
+    }
+
+    override fun onCacheAccess(metrics: DocumentationMetrics, cache: String, hit: Boolean) {
+        registry.counter("javalin.openapi.cache", "plugin", metrics.plugin, "cache", cache, "result", if (hit) "hit" else "miss").increment()
+    }
+
+    override fun onPreparation(metrics: DocumentationMetrics, version: String, durationNanos: Long) {
+        registry.timer("javalin.openapi.preparation", "plugin", metrics.plugin, "version", version).record(durationNanos, TimeUnit.NANOSECONDS)
+    }
+
+    override fun onRetainedBytes(metrics: DocumentationMetrics, version: String?, variant: String, bytes: Long) {
+        registerRetainedBytes(metrics, version, variant)
+    }
+
+    private fun registerRetainedBytes(metrics: DocumentationMetrics, version: String?, variant: String) {
+        // registration of already existing gauge returns the registered one
+        Gauge.builder("javalin.openapi.retained.bytes", metrics) { it.getRetainedBytes(version, variant).toDouble() }
+            .tags("plugin", metrics.plugin, "version", version ?: NO_VERSION, "variant", variant)
+            .baseUnit("bytes")
+            .register(registry)
+    }
+
+}
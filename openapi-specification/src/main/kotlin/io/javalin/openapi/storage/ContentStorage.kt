@@ -0,0 +1,165 @@
+package io.javalin.openapi.storage
+
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.lang.ref.Cleaner
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.READ
+
+/** Storage of prepared documents and assets served by documentation plugins */
+fun interface ContentStorage {
+    fun store(content: ByteArray): StoredContent
+}
+
+/** Immutable content kept by [ContentStorage] */
+interface StoredContent {
+
+    /** Size of content in bytes */
+    val size: Int
+
+    /** Writes the whole content to given output */
+    fun writeTo(output: OutputStream)
+
+    /** Writes part of content to given output */
+    fun writeTo(output: OutputStream, offset: Int, length: Int) =
+        output.write(toByteArray(), offset, length)
+
+    fun toByteArray(): ByteArray
+
+    fun inputStream(): InputStream =
+        toByteArray().inputStream()
+
+}
+
+/** Content kept in a [ByteBuffer] outside the heap, so it can be written to outputs that accept buffers without copying it back to the heap */
+interface BufferedStoredContent : StoredContent {
+
+    /** Returns read-only view of the given part of content, each call returns a new view, so concurrent writers don't share its position */
+    fun asReadOnlyBuffer(offset: Int, length: Int): ByteBuffer
+
+}
+
+/** Keeps content on the heap */
+class HeapContentStorage : ContentStorage {
+
+    override fun store(content: ByteArray): StoredContent =
+        HeapStoredContent(content)
+
+    private class HeapStoredContent(private val content: ByteArray) : StoredContent {
+        override val size: Int = content.size
+        override fun writeTo(output: OutputStream) = output.write(content)
+        override fun toByteArray(): ByteArray = content
+    }
+
+}
+
+/** Keeps content in direct [ByteBuffer]s, outside the heap */
+class DirectContentStorage : ContentStorage {
+
+    override fun store(content: ByteArray): StoredContent =
+        ByteBufferStoredContent(
+            ByteBuffer.allocateDirect(content.size)
+                .put(content)
+                .flip()
+        )
+
+}
+
+/**
+ * Keeps content in memory-mapped files in the given directory, so it's paged by the operating system instead of being kept on the heap.
+ * Each file is deleted right after it's mapped, so it's released together with its mapping when the content is replaced or evicted.
+ */
+class MappedFileContentStorage @JvmOverloads constructor(
+    private val directory: Path = Files.createTempDirectory("javalin-openapi")
+) : ContentStorage {
+
+    private companion object {
+        val cleaner: Cleaner = Cleaner.create()
+    }
+
+    override fun store(content: ByteArray): StoredContent {
+        val file = Files.createTempFile(directory, "content-", ".bin")
+        Files.write(file, content)
+
+        val stored = FileChannel.open(file, READ).use { channel ->
+            ByteBufferStoredContent(channel.map(FileChannel.MapMode.READ_ONLY, 0, content.size.toLong()))
+        }
+
+        try {
+            // mapping stays valid without the file on systems that allow deleting mapped files
+            Files.delete(file)
+        } catch (exception: IOException) {
+            // e.g. Windows keeps mapped files locked, so they're deleted once the content is no longer referenced
+            cleaner.register(stored) { runCatching { Files.deleteIfExists(file) } }
+        }
+
+        return stored
+    }
+
+}
+
+private class ByteBufferStoredContent(private val buffer: ByteBuffer) : BufferedStoredContent {
+
+    private companion object {
+        const val CHUNK_SIZE = 8192
+    }
+
+    override val size: Int = buffer.remaining()
+
+    override fun writeTo(output: OutputStream) =
+        writeTo(output, 0, size)
+
+    override fun writeTo(output: OutputStream, offset: Int, length: Int) {
+        val view = asReadOnlyBuffer(offset, length)
+        val chunk = ByteArray(minOf(CHUNK_SIZE, length))
+
+        while (view.hasRemaining()) {
+            val chunkLength = minOf(chunk.size, view.remaining())
+            view.get(chunk, 0, chunkLength)
+            output.write(chunk, 0, chunkLength)
+        }
+    }
+
+    override fun asReadOnlyBuffer(offset: Int, length: Int): ByteBuffer {
+        // each writer works on its own view of the buffer, so concurrent responses don't share position
+        val view = buffer.asReadOnlyBuffer()
+        view.position(view.position() + offset)
+        view.limit(view.position() + length)
+        return view
+    }
+
+    override fun toByteArray(): ByteArray =
+        ByteArray(size).also { buffer.duplicate().get(it) }
+
+    override fun inputStream(): InputStream =
+        ByteBufferInputStream(asReadOnlyBuffer(0, size))
+
+}
+
+/** Reads content directly from a view of the buffer, so parsers don't copy the whole content back to the heap */
+private class ByteBufferInputStream(private val view: ByteBuffer) : InputStream() {
+
+    override fun read(): Int =
+        if (view.hasRemaining()) view.get().toInt() and 0xFF else -1
+
+    override fun read(bytes: ByteArray, offset: Int, length: Int): Int {
+        if (length == 0) {
+            return 0
+        }
+        if (!view.hasRemaining()) {
+            return -1
+        }
+
+        val readLength = minOf(length, view.remaining())
+        view.get(bytes, offset, readLength)
+        return readLength
+    }
+
+    override fun available(): Int =
+        view.remaining()
+
+}
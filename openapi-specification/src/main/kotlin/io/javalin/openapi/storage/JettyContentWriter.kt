@@ -0,0 +1,21 @@
+package io.javalin.openapi.storage
+
+import io.javalin.http.Context
+import org.eclipse.jetty.server.HttpOutput
+
+/**
+ * Passes buffers of off-heap content straight to Jetty, which writes them to the connection without copying them to the heap.
+ * Kept apart from [ContentStorage], so storages don't depend on the server, it's used by handlers of documentation and webjar assets.
+ */
+object JettyContentWriter : ContentWriter {
+
+    override fun write(context: Context, content: StoredContent, offset: Int, length: Int) {
+        val output = context.res().outputStream
+
+        when {
+            output is HttpOutput && content is BufferedStoredContent -> output.write(content.asReadOnlyBuffer(offset, length))
+            else -> content.writeTo(output, offset, length)
+        }
+    }
+
+}
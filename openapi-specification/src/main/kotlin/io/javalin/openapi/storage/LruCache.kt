@@ -0,0 +1,58 @@
+package io.javalin.openapi.storage
+
+import io.javalin.openapi.metrics.DocumentationMetrics
+
+/**
+ * Thread-safe LRU cache of prepared content bounded by total weight of its values, by default by the number of entries.
+ * Hits and misses are recorded in [metrics] under [name].
+ */
+class LruCache<K : Any, V : Any> @JvmOverloads constructor(
+    /** Name of the cache in [DocumentationMetrics], e.g. `filtered-documentation` */
+    val name: String,
+    private val maxWeight: Long,
+    private val metrics: DocumentationMetrics?,
+    /** Weight of a single value, e.g. retained bytes */
+    private val weigher: (V) -> Long = { 1 }
+) {
+
+    private val entries = LinkedHashMap<K, V>(16, 0.75f, true)
+    private var retainedWeight = 0L
+
+    /** Returns cached value and records the access */
+    fun get(key: K): V? {
+        val value = synchronized(entries) { entries[key] }
+        metrics?.recordCacheAccess(name, hit = value != null)
+        return value
+    }
+
+    /** Caches given value, returns the value cached under the same key in the meantime if there's one */
+    fun put(key: K, value: V): V =
+        synchronized(entries) {
+            entries[key]?.let { return it }
+            entries[key] = value
+            retainedWeight += weigher(value)
+            evict()
+            value
+        }
+
+    /** Returns cached value, or caches the created one, values are created outside the lock, so they don't block reads of other entries */
+    fun getOrCreate(key: K, create: () -> V): V =
+        get(key) ?: put(key, create())
+
+    val size: Int
+        get() = synchronized(entries) { entries.size }
+
+    /** Total weight of cached values */
+    val weight: Long
+        get() = synchronized(entries) { retainedWeight }
+
+    private fun evict() {
+        val iterator = entries.values.iterator()
+
+        while (retainedWeight > maxWeight && iterator.hasNext()) {
+            retainedWeight -= weigher(iterator.next())
+            iterator.remove()
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package io.javalin.openapi.storage
+
+import io.javalin.http.Context
+import io.javalin.http.HandlerType
+import io.javalin.http.Header
+import io.javalin.http.HttpStatus
+import java.security.MessageDigest
+import java.util.Base64
+
+/**
+ * Response body encoded and hashed once, so it can be served with validators to every request,
+ * e.g. documents, pages and assets of documentation UIs, or a single precompressed representation of them.
+ */
+class PreparedResponse(
+    val content: StoredContent,
+    /** Strong validator of this representation */
+    val etag: String,
+    val contentType: String?,
+    /** Content coding applied to [content], or null for identity */
+    val encoding: String? = null,
+    private val writer: ContentWriter = ContentWriter.STREAM
+) {
+
+    @JvmOverloads
+    constructor(content: ByteArray, contentType: String?, storage: ContentStorage = HEAP_STORAGE, writer: ContentWriter = ContentWriter.STREAM) :
+        this(storage.store(content), createEntityTag(content), contentType, writer = writer)
+
+    companion object {
+        /** Cache-Control of content addressed by its revision, e.g. versioned webjar assets, it never changes under the same URL */
+        const val IMMUTABLE = "public, max-age=31536000, immutable"
+        /** Cache-Control of content that may change under the same URL, cached copies are revalidated with ETag */
+        const val REVALIDATE = "no-cache"
+
+        private val HEAP_STORAGE = HeapContentStorage()
+
+        /** Strong validator of given content */
+        @JvmStatic
+        fun createEntityTag(content: ByteArray): String =
+            MessageDigest.getInstance("SHA-256")
+                .digest(content)
+                .let { Base64.getUrlEncoder().withoutPadding().encodeToString(it) }
+                .let { "\"$it\"" }
+
+        /** Checks if given If-None-Match header value matches given entity tag */
+        @JvmStatic
+        fun matches(etag: String, ifNoneMatch: String?): Boolean =
+            when {
+                ifNoneMatch == null -> false
+                ifNoneMatch == etag -> true
+                else -> ifNoneMatch.split(',').any { it.trim().removePrefix("W/").let { tag -> tag == etag || tag == "*" } }
+            }
+    }
+
+    /** Value of Content-Length header */
+    val contentLength: String = content.size.toString()
+
+    /** Checks if given If-None-Match header value matches this response */
+    fun matches(ifNoneMatch: String?): Boolean =
+        matches(etag, ifNoneMatch)
+
+    /**
+     * Writes response with ETag and given Cache-Control, or `304 Not Modified` if client has the same content.
+     * Headers describing the resource rather than this representation, e.g. Vary, are set by the caller.
+     *
+     * @param cacheControl value of Cache-Control header, not set if null
+     * @param contentType overrides [PreparedResponse.contentType], e.g. for documents served under a different media type
+     * @return number of written bytes
+     */
+    @JvmOverloads
+    fun serve(context: Context, cacheControl: String?, contentType: String? = this.contentType): Long =
+        serve(context, etag, cacheControl, contentType, encoding, contentLength) { writer.write(context, content, 0, content.size) }
+
+    /**
+     * Writes part of the content, e.g. a single value of JSON document, with validator derived from [etag].
+     * Slices are taken only from identity representations, offsets of encoded content don't point to values.
+     *
+     * @return number of written bytes
+     */
+    @JvmOverloads
+    fun serveSlice(context: Context, offset: Int, length: Int, cacheControl: String?, contentType: String? = this.contentType): Long {
+        check(encoding == null) { "Cannot serve slice of content encoded with $encoding" }
+        // slices of the same content are unique by their location
+        val sliceEtag = etag.dropLast(1) + "-" + offset + "-" + length + "\""
+        return serve(context, sliceEtag, cacheControl, contentType, null, length.toString()) { writer.write(context, content, offset, length) }
+    }
+
+    private inline fun serve(
+        context: Context,
+        etag: String,
+        cacheControl: String?,
+        contentType: String?,
+        encoding: String?,
+        contentLength: String,
+        write: () -> Unit
+    ): Long {
+        context.header(Header.ETAG, etag)
+        cacheControl?.let { context.header(Header.CACHE_CONTROL, it) }
+        contentType?.let { context.contentType(it) }
+
+        if (matches(etag, context.header(Header.IF_NONE_MATCH))) {
+            context.status(HttpStatus.NOT_MODIFIED)
+            return 0
+        }
+
+        encoding?.let { context.header(Header.CONTENT_ENCODING, it) }
+        context.header(Header.CONTENT_LENGTH, contentLength)
+
+        if (context.method() == HandlerType.HEAD) {
+            return 0
+        }
+
+        // written directly to the underlying stream, so the prepared content is neither copied into Javalin's result nor compressed again
+        write()
+        return contentLength.toLong()
+    }
+
+}
+
+/** Writes stored content to the response, lets server integrations send [BufferedStoredContent] without copying it to the heap */
+fun interface ContentWriter {
+
+    fun write(context: Context, content: StoredContent, offset: Int, length: Int)
+
+    companion object {
+        /** Copies content to the servlet output stream */
+        @JvmField
+        val STREAM = ContentWriter { context, content, offset, length -> content.writeTo(context.res().outputStream, offset, length) }
+    }
+
+}
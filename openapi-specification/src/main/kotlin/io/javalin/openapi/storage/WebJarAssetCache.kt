@@ -0,0 +1,44 @@
+package io.javalin.openapi.storage
+
+import io.javalin.openapi.metrics.DocumentationMetrics
+import org.eclipse.jetty.http.MimeTypes
+
+/**
+ * Assets of documentation UI webjars, read from the classpath on the first request and kept as [PreparedResponse]s,
+ * so their ETags and MIME types are resolved once per asset.
+ * Least recently used assets are evicted when the cache retains more than [maxBytes].
+ */
+class WebJarAssetCache @JvmOverloads constructor(
+    private val classLoader: ClassLoader,
+    private val storage: ContentStorage = HeapContentStorage(),
+    maxBytes: Long = DEFAULT_MAX_BYTES,
+    private val metrics: DocumentationMetrics? = null,
+    /** Writer of assets, e.g. [JettyContentWriter] to send off-heap assets without copying them to the heap */
+    private val writer: ContentWriter = ContentWriter.STREAM
+) {
+
+    companion object {
+        /** Fits the largest bundle with its source maps */
+        const val DEFAULT_MAX_BYTES = 32L * 1024 * 1024
+        private const val CACHE_NAME = "webjar"
+        private const val RESOURCES_ROOT = "META-INF/resources"
+
+        private fun resolveContentType(resourcePath: String): String? =
+            MimeTypes.getDefaultMimeByExtension(resourcePath) // Swagger returns various non-standard assets like .js.map that are not recognized
+                ?.let { if (it.startsWith("text/") || it.endsWith("javascript") || it.endsWith("json")) "$it; charset=UTF-8" else it }
+    }
+
+    private val assets = LruCache<String, PreparedResponse>(CACHE_NAME, maxBytes, metrics) { it.content.size.toLong() }
+
+    /** Returns asset of the given webjar path, e.g. `/webjars/swagger-ui/5.17.14/swagger-ui.css`, or null if there is no such resource */
+    fun find(webJarPath: String): PreparedResponse? {
+        assets.get(webJarPath)?.let { return it }
+
+        // read outside the lock, so a large bundle doesn't block requests for cached assets
+        val content = classLoader.getResourceAsStream(RESOURCES_ROOT + webJarPath)?.use { it.readAllBytes() } ?: return null
+        val asset = assets.put(webJarPath, PreparedResponse(content, resolveContentType(webJarPath), storage, writer))
+        metrics?.recordRetainedBytes(null, CACHE_NAME, assets.weight)
+        return asset
+    }
+
+}
@@ -0,0 +1,72 @@
+package io.javalin.openapi.validation
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.JsonNode
+import io.javalin.openapi.JsonSchema
+import io.javalin.openapi.JsonSchemaRegistry
+import io.javalin.openapi.RegisteredJsonSchema
+import java.util.concurrent.ConcurrentHashMap
+
+/** Validator of a single JSON Schema generated for class annotated with [JsonSchema] */
+class CompiledJsonSchema internal constructor(
+    /** Fully qualified name of the class */
+    val name: String,
+    private val validator: SchemaValidator,
+    private val streamingValidator: StreamingSchemaValidator
+) {
+
+    /** Checks the given value without allocating errors, copies of it or exceptions, use [validate] to find out why it's invalid */
+    fun isValid(value: JsonNode): Boolean =
+        validator.isValid(value)
+
+    /** Returns all errors of the given value, empty if it's valid */
+    fun validate(value: JsonNode): List<ValidationError> =
+        when {
+            // valid values are the common case, so errors are collected only for the rest
+            validator.isValid(value) -> emptyList()
+            else -> validator.validate(value)
+        }
+
+    /** Reads the next value of the given parser, throws [SchemaValidationException] for the first violation */
+    fun validate(parser: JsonParser) =
+        streamingValidator.validate(parser)
+
+    /** Wraps parser, so values are validated while they're read, see [StreamingSchemaValidator.parser] */
+    fun parser(parser: JsonParser): JsonParser =
+        streamingValidator.parser(parser)
+
+}
+
+/**
+ * Validators of JSON Schemas generated for classes annotated with [JsonSchema].
+ * Each schema is compiled once on its first lookup into a tree of checks specialized for the keywords it uses,
+ * then cached and shared by all threads.
+ */
+class JsonSchemaValidators @JvmOverloads constructor(private val registry: JsonSchemaRegistry = JsonSchemaRegistry()) {
+
+    private val validators = ConcurrentHashMap<String, CompiledJsonSchema>()
+
+    fun find(name: String): CompiledJsonSchema? =
+        validators[name]
+            ?: registry.find(name)?.let { schema -> validators.computeIfAbsent(name) { compile(schema) } }
+
+    fun find(type: Class<*>): CompiledJsonSchema? =
+        find(type.canonicalName ?: type.name)
+
+    /** Returns validator of the given class, throws [IllegalStateException] if there is no schema generated for it */
+    fun get(type: Class<*>): CompiledJsonSchema =
+        find(type) ?: throw IllegalStateException("There is no JSON Schema generated for ${type.name}, make sure it's annotated with @JsonSchema")
+
+    private fun compile(schema: RegisteredJsonSchema): CompiledJsonSchema {
+        val node = schema.getNode()
+        // local references, e.g. `#/definitions/...`, point to the schema itself
+        val compiler = SchemaValidatorCompiler(node)
+
+        return CompiledJsonSchema(
+            name = schema.name,
+            validator = compiler.compile(node),
+            streamingValidator = compiler.compileStreaming(node)
+        )
+    }
+
+}
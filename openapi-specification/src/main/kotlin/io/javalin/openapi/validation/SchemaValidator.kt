@@ -0,0 +1,53 @@
+package io.javalin.openapi.validation
+
+import com.fasterxml.jackson.databind.JsonNode
+
+/** Invalid value found by [SchemaValidator] */
+data class ValidationError(
+    /** JSON Pointer of the invalid value within the validated document, empty for the document itself */
+    val pointer: String,
+    /** Schema keyword that is not satisfied, e.g. `type` or `minLength` */
+    val keyword: String,
+    val message: String
+)
+
+/** Location of validated value, converted to JSON Pointer only for invalid values */
+class ValidationPath private constructor(
+    private val parent: ValidationPath?,
+    private val segment: String?
+) {
+
+    companion object {
+        @JvmField
+        val ROOT = ValidationPath(null, null)
+    }
+
+    fun resolve(segment: String): ValidationPath =
+        ValidationPath(this, segment)
+
+    fun resolve(index: Int): ValidationPath =
+        ValidationPath(this, index.toString())
+
+    override fun toString(): String =
+        when (parent) {
+            null -> ""
+            else -> "$parent/${segment!!.replace("~", "~0").replace("/", "~1")}"
+        }
+
+}
+
+/** Validator compiled once from a schema by [SchemaValidatorCompiler], checks only the keywords used by the schema */
+fun interface SchemaValidator {
+
+    /** Adds errors of the given value to [errors] */
+    fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>)
+
+    /** Returns errors of the given value, empty if it's valid */
+    fun validate(value: JsonNode): List<ValidationError> =
+        ArrayList<ValidationError>(0).also { validate(value, ValidationPath.ROOT, it) }
+
+    /** Checks the given value without collecting errors, compiled validators allocate only regex matchers and iterators of additional properties */
+    fun isValid(value: JsonNode): Boolean =
+        ArrayList<ValidationError>(0).also { validate(value, ValidationPath.ROOT, it) }.isEmpty()
+
+}
@@ -0,0 +1,804 @@
+package io.javalin.openapi.validation
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.node.MissingNode
+import java.math.BigDecimal
+import java.util.regex.Pattern
+
+/**
+ * Compiles OpenApi and JSON Schema schemas into [SchemaValidator]s.
+ * Each schema is turned into a tree of validators specialized for the keywords it uses,
+ * so validated values are never checked against the schema as JSON.
+ * Compiler is not thread-safe, compiled validators are.
+ *
+ * @param document document with schemas referenced by local `$ref`s, e.g. OpenApi documentation
+ */
+class SchemaValidatorCompiler @JvmOverloads constructor(private val document: JsonNode = MissingNode.getInstance()) {
+
+    private companion object {
+        val ACCEPT_ALL: SchemaValidator = AcceptingValidator
+
+        /** Keywords that can be checked only when the whole value is available */
+        val BUFFERED_KEYWORDS = setOf("enum", "const", "allOf", "anyOf", "oneOf", "not")
+
+        val FORMATS: Map<String, (String) -> Boolean> = mapOf(
+            "date" to DateTimeFormats::isDate,
+            "date-time" to DateTimeFormats::isDateTime,
+            "uuid" to Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$").let { pattern -> { value: String -> pattern.matcher(value).matches() } },
+            "email" to Pattern.compile("^[^@\\s]+@[^@\\s]+$").let { pattern -> { value: String -> pattern.matcher(value).matches() } }
+        )
+    }
+
+    /** Validators of referenced schemas, shared by all schemas that reference them, including recursive ones */
+    private val references = HashMap<String, ReferenceValidator>()
+    private val streamingReferences = HashMap<String, StreamingSchema>()
+
+    fun compile(schema: JsonNode): SchemaValidator {
+        if (schema.isBoolean) {
+            return if (schema.booleanValue()) ACCEPT_ALL else RejectingValidator
+        }
+
+        if (!schema.isObject) {
+            return ACCEPT_ALL
+        }
+
+        // siblings of references are ignored, as in OpenApi 3.0
+        schema.get("\$ref")?.let { return compileReference(it.asText()) }
+
+        val validators = listOfNotNull(
+            compileType(schema),
+            compileEnum(schema),
+            compileString(schema),
+            compileNumber(schema),
+            compileArray(schema),
+            compileObject(schema),
+            compileComposition(schema)
+        )
+
+        val validator = when (validators.size) {
+            0 -> ACCEPT_ALL
+            1 -> validators[0]
+            else -> AllOfValidator(validators.toTypedArray())
+        }
+
+        return when {
+            schema.path("nullable").asBoolean() -> NullableValidator(validator)
+            else -> validator
+        }
+    }
+
+    /**
+     * Compiles schema into validator of token streams, so large documents can be validated without reading them into a tree.
+     * Only subtrees validated by `enum`, `const`, `uniqueItems` or composition keywords are buffered, as these keywords require whole values.
+     */
+    fun compileStreaming(schema: JsonNode): StreamingSchemaValidator =
+        StreamingSchemaValidator(compileStreamingSchema(schema))
+
+    private fun compileStreamingSchema(schema: JsonNode): StreamingSchema {
+        val reference = schema.get("\$ref")?.asText()
+            ?: return StreamingSchema().also { it.initialize(schema, compile(schema)) }
+
+        streamingReferences[reference]?.let { return it }
+
+        // registered before compilation, so recursive schemas reference the same streaming schema
+        val streamingSchema = StreamingSchema()
+        streamingReferences[reference] = streamingSchema
+        streamingSchema.initialize(resolveReference(reference), compile(schema))
+        return streamingSchema
+    }
+
+    private fun StreamingSchema.initialize(schema: JsonNode, validator: SchemaValidator) {
+        this.validator = validator
+        this.validatesScalars = validator !== ACCEPT_ALL
+
+        if (!schema.isObject) {
+            // rejecting schema has to see the whole value
+            buffered = schema.isBoolean && !schema.booleanValue()
+            return
+        }
+
+        buffered = BUFFERED_KEYWORDS.any { schema.has(it) } || schema.path("uniqueItems").asBoolean()
+
+        val types = schema.get("type")?.let { type -> if (type.isArray) type.map { it.asText() } else listOf(type.asText()) }
+        typeName = types?.joinToString()
+        objectAllowed = types == null || "object" in types
+        arrayAllowed = types == null || "array" in types
+
+        properties = schema.get("properties")?.fields()?.asSequence()?.associate { (name, property) -> name to compileStreamingSchema(property) } ?: emptyMap()
+        required = schema.get("required")?.takeIf { it.isArray }?.map { it.asText() }?.toTypedArray() ?: emptyArray()
+        minProperties = schema.intKeyword("minProperties") ?: 0
+        maxProperties = schema.intKeyword("maxProperties") ?: Int.MAX_VALUE
+
+        val additionalPropertiesSchema = schema.get("additionalProperties")
+        additionalPropertiesForbidden = additionalPropertiesSchema != null && additionalPropertiesSchema.isBoolean && !additionalPropertiesSchema.booleanValue()
+        additionalProperties = when {
+            additionalPropertiesSchema == null || additionalPropertiesSchema.isBoolean -> StreamingSchema.ACCEPT_ALL
+            else -> compileStreamingSchema(additionalPropertiesSchema)
+        }
+
+        items = schema.get("items")?.let { compileStreamingSchema(it) } ?: StreamingSchema.ACCEPT_ALL
+        minItems = schema.intKeyword("minItems") ?: 0
+        maxItems = schema.intKeyword("maxItems") ?: Int.MAX_VALUE
+    }
+
+    private fun compileReference(reference: String): SchemaValidator {
+        references[reference]?.let { return it }
+
+        val referencedSchema = resolveReference(reference)
+
+        // registered before compilation, so recursive schemas reference the same validator
+        val validator = ReferenceValidator()
+        references[reference] = validator
+        validator.target = compile(referencedSchema)
+        return validator
+    }
+
+    private fun resolveReference(reference: String): JsonNode {
+        if (!reference.startsWith("#")) {
+            throw IllegalStateException("Only local references are supported, found $reference")
+        }
+
+        val referencedSchema = document.at(reference.removePrefix("#"))
+
+        if (referencedSchema.isMissingNode) {
+            throw IllegalStateException("Cannot resolve reference $reference")
+        }
+
+        return referencedSchema
+    }
+
+    private fun compileType(schema: JsonNode): SchemaValidator? {
+        val type = schema.get("type") ?: return null
+
+        val types = when {
+            type.isArray -> type.map { it.asText() }
+            else -> listOf(type.asText())
+        }
+
+        val nullable = schema.path("nullable").asBoolean() || "null" in types
+        val checks = types.filter { it != "null" }
+            .map { JsonType.of(it) ?: throw IllegalStateException("Unknown type '$it' in schema $schema") }
+            .toTypedArray()
+
+        return when (checks.size) {
+            1 -> checks[0].let { check -> TypeValidator(types.joinToString(), nullable) { check.matches(it) } }
+            else -> TypeValidator(types.joinToString(), nullable) { value -> checks.any { it.matches(value) } }
+        }
+    }
+
+    private fun compileEnum(schema: JsonNode): SchemaValidator? {
+        val allowed = schema.get("enum")?.takeIf { it.isArray }?.toSet()
+            ?: schema.get("const")?.let { setOf(it) }
+            ?: return null
+
+        return EnumValidator(allowed)
+    }
+
+    private fun compileString(schema: JsonNode): SchemaValidator? {
+        val minLength = schema.intKeyword("minLength")
+        val maxLength = schema.intKeyword("maxLength")
+        val pattern = schema.get("pattern")?.asText()?.let { Pattern.compile(it) }
+        val formatName = schema.get("format")?.asText()
+        val format = formatName?.let { FORMATS[it] }
+
+        if (minLength == null && maxLength == null && pattern == null && format == null) {
+            return null
+        }
+
+        return StringValidator(minLength ?: 0, maxLength ?: Int.MAX_VALUE, pattern, formatName, format)
+    }
+
+    private fun compileNumber(schema: JsonNode): SchemaValidator? {
+        // OpenApi 3.0 uses boolean modifiers of minimum and maximum, JSON Schema uses numeric limits that may be combined with them
+        val exclusiveMinimumModifier = schema.path("exclusiveMinimum").let { it.isBoolean && it.booleanValue() }
+        val exclusiveMaximumModifier = schema.path("exclusiveMaximum").let { it.isBoolean && it.booleanValue() }
+        val minimum = schema.decimalKeyword("minimum")
+        val maximum = schema.decimalKeyword("maximum")
+        val exclusiveMinimum = schema.decimalKeyword("exclusiveMinimum") ?: minimum?.takeIf { exclusiveMinimumModifier }
+        val exclusiveMaximum = schema.decimalKeyword("exclusiveMaximum") ?: maximum?.takeIf { exclusiveMaximumModifier }
+        val multipleOf = schema.decimalKeyword("multipleOf")?.takeIf { it.signum() > 0 }
+        val intFormat = when (schema.get("format")?.asText()) {
+            "int32" -> Int.MIN_VALUE.toLong()..Int.MAX_VALUE.toLong()
+            else -> null
+        }
+
+        if (minimum == null && maximum == null && exclusiveMinimum == null && exclusiveMaximum == null && multipleOf == null && intFormat == null) {
+            return null
+        }
+
+        return NumberValidator(
+            minimum = minimum?.takeUnless { exclusiveMinimumModifier },
+            exclusiveMinimum = exclusiveMinimum,
+            maximum = maximum?.takeUnless { exclusiveMaximumModifier },
+            exclusiveMaximum = exclusiveMaximum,
+            multipleOf = multipleOf,
+            range = intFormat
+        )
+    }
+
+    private fun compileArray(schema: JsonNode): SchemaValidator? {
+        val items = schema.get("items")?.let { compile(it) }
+        val minItems = schema.intKeyword("minItems")
+        val maxItems = schema.intKeyword("maxItems")
+        val uniqueItems = schema.path("uniqueItems").asBoolean()
+
+        if (items == null && minItems == null && maxItems == null && !uniqueItems) {
+            return null
+        }
+
+        return ArrayValidator(items, minItems ?: 0, maxItems ?: Int.MAX_VALUE, uniqueItems)
+    }
+
+    private fun compileObject(schema: JsonNode): SchemaValidator? {
+        val properties = schema.get("properties")?.fields()?.asSequence()?.map { (name, property) -> name to compile(property) }?.toList() ?: emptyList()
+        val required = schema.get("required")?.takeIf { it.isArray }?.map { it.asText() } ?: emptyList()
+        val additionalPropertiesSchema = schema.get("additionalProperties")
+        val minProperties = schema.intKeyword("minProperties")
+        val maxProperties = schema.intKeyword("maxProperties")
+
+        if (properties.isEmpty() && required.isEmpty() && additionalPropertiesSchema == null && minProperties == null && maxProperties == null) {
+            return null
+        }
+
+        val additionalProperties = when {
+            additionalPropertiesSchema == null -> null
+            additionalPropertiesSchema.isBoolean && additionalPropertiesSchema.booleanValue() -> null
+            else -> compile(additionalPropertiesSchema)
+        }
+
+        return ObjectValidator(
+            names = properties.map { it.first }.toTypedArray(),
+            validators = properties.map { it.second }.toTypedArray(),
+            required = required.toTypedArray(),
+            additionalProperties = additionalProperties,
+            minProperties = minProperties ?: 0,
+            maxProperties = maxProperties ?: Int.MAX_VALUE
+        )
+    }
+
+    private fun compileComposition(schema: JsonNode): SchemaValidator? {
+        val validators = listOfNotNull(
+            schema.get("allOf")?.map { compile(it) }?.let { AllOfValidator(it.toTypedArray()) },
+            schema.get("anyOf")?.map { compile(it) }?.let { AnyOfValidator(it.toTypedArray(), exactlyOne = false) },
+            schema.get("oneOf")?.map { compile(it) }?.let { AnyOfValidator(it.toTypedArray(), exactlyOne = true) },
+            schema.get("not")?.let { compile(it) }?.let { NotValidator(it) }
+        )
+
+        return when (validators.size) {
+            0 -> null
+            1 -> validators[0]
+            else -> AllOfValidator(validators.toTypedArray())
+        }
+    }
+
+    // validation annotations write their limits as strings
+    private fun JsonNode.intKeyword(name: String): Int? =
+        get(name)?.takeUnless { it.isNull }?.asText()?.toBigDecimalOrNull()?.toInt()
+
+    private fun JsonNode.decimalKeyword(name: String): BigDecimal? =
+        get(name)?.takeUnless { it.isNull || it.isBoolean }?.asText()?.toBigDecimalOrNull()
+
+}
+
+private enum class JsonType(val typeName: String) {
+    STRING("string") {
+        override fun matches(value: JsonNode): Boolean = value.isTextual
+    },
+    INTEGER("integer") {
+        override fun matches(value: JsonNode): Boolean =
+            value.isIntegralNumber || (value.isFloatingPointNumber && value.decimalValue().stripTrailingZeros().scale() <= 0)
+    },
+    NUMBER("number") {
+        override fun matches(value: JsonNode): Boolean = value.isNumber
+    },
+    BOOLEAN("boolean") {
+        override fun matches(value: JsonNode): Boolean = value.isBoolean
+    },
+    OBJECT("object") {
+        override fun matches(value: JsonNode): Boolean = value.isObject
+    },
+    ARRAY("array") {
+        override fun matches(value: JsonNode): Boolean = value.isArray
+    };
+
+    abstract fun matches(value: JsonNode): Boolean
+
+    companion object {
+        fun of(typeName: String): JsonType? =
+            values().firstOrNull { it.typeName == typeName }
+    }
+}
+
+private object AcceptingValidator : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {}
+
+    override fun isValid(value: JsonNode): Boolean = true
+}
+
+private object RejectingValidator : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        errors.add(ValidationError(path.toString(), "false", "no value is allowed"))
+    }
+
+    override fun isValid(value: JsonNode): Boolean = false
+}
+
+private class ReferenceValidator : SchemaValidator {
+    lateinit var target: SchemaValidator
+
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) =
+        target.validate(value, path, errors)
+
+    override fun isValid(value: JsonNode): Boolean =
+        target.isValid(value)
+}
+
+private class NullableValidator(private val validator: SchemaValidator) : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!value.isNull) {
+            validator.validate(value, path, errors)
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean =
+        value.isNull || validator.isValid(value)
+}
+
+private class TypeValidator(
+    private val typeName: String,
+    private val nullable: Boolean,
+    private val check: (JsonNode) -> Boolean
+) : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!isValid(value)) {
+            errors.add(ValidationError(path.toString(), "type", "must be of type $typeName"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean =
+        check(value) || (nullable && value.isNull)
+}
+
+private class EnumValidator(private val allowed: Set<JsonNode>) : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!isValid(value)) {
+            errors.add(ValidationError(path.toString(), "enum", "must be one of $allowed"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean =
+        value in allowed
+}
+
+private class StringValidator(
+    private val minLength: Int,
+    private val maxLength: Int,
+    private val pattern: Pattern?,
+    private val formatName: String?,
+    private val format: ((String) -> Boolean)?
+) : SchemaValidator {
+
+    private val checkLength = minLength > 0 || maxLength < Int.MAX_VALUE
+
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!value.isTextual) {
+            return
+        }
+
+        val text = value.textValue()
+
+        if (checkLength) {
+            val length = text.codePointCount(0, text.length)
+
+            if (length < minLength) {
+                errors.add(ValidationError(path.toString(), "minLength", "must be at least $minLength characters long"))
+            }
+            if (length > maxLength) {
+                errors.add(ValidationError(path.toString(), "maxLength", "must be at most $maxLength characters long"))
+            }
+        }
+
+        if (pattern != null && !pattern.matcher(text).find()) {
+            errors.add(ValidationError(path.toString(), "pattern", "must match pattern ${pattern.pattern()}"))
+        }
+
+        if (format != null && !format.invoke(text)) {
+            errors.add(ValidationError(path.toString(), "format", "must be a valid $formatName"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean {
+        if (!value.isTextual) {
+            return true
+        }
+
+        val text = value.textValue()
+
+        if (checkLength && text.codePointCount(0, text.length).let { it < minLength || it > maxLength }) {
+            return false
+        }
+
+        return (pattern == null || pattern.matcher(text).find()) && (format == null || format.invoke(text))
+    }
+
+}
+
+private class NumberValidator(
+    private val minimum: BigDecimal?,
+    private val exclusiveMinimum: BigDecimal?,
+    private val maximum: BigDecimal?,
+    private val exclusiveMaximum: BigDecimal?,
+    private val multipleOf: BigDecimal?,
+    private val range: LongRange?
+) : SchemaValidator {
+
+    private val minimumValue = minimum?.toDouble()
+    private val exclusiveMinimumValue = exclusiveMinimum?.toDouble()
+    private val maximumValue = maximum?.toDouble()
+    private val exclusiveMaximumValue = exclusiveMaximum?.toDouble()
+
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!value.isNumber) {
+            return
+        }
+
+        val number = value.doubleValue()
+
+        if (minimum != null && compare(value, number, minimum, minimumValue!!) < 0) {
+            errors.add(ValidationError(path.toString(), "minimum", "must be at least $minimum"))
+        }
+
+        if (exclusiveMinimum != null && compare(value, number, exclusiveMinimum, exclusiveMinimumValue!!) <= 0) {
+            errors.add(ValidationError(path.toString(), "exclusiveMinimum", "must be greater than $exclusiveMinimum"))
+        }
+
+        if (maximum != null && compare(value, number, maximum, maximumValue!!) > 0) {
+            errors.add(ValidationError(path.toString(), "maximum", "must be at most $maximum"))
+        }
+
+        if (exclusiveMaximum != null && compare(value, number, exclusiveMaximum, exclusiveMaximumValue!!) >= 0) {
+            errors.add(ValidationError(path.toString(), "exclusiveMaximum", "must be less than $exclusiveMaximum"))
+        }
+
+        if (multipleOf != null && value.decimalValue().remainder(multipleOf).signum() != 0) {
+            errors.add(ValidationError(path.toString(), "multipleOf", "must be a multiple of $multipleOf"))
+        }
+
+        if (range != null && value.isIntegralNumber && (!value.canConvertToLong() || value.longValue() !in range)) {
+            errors.add(ValidationError(path.toString(), "format", "must be in range of $range"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean {
+        if (!value.isNumber) {
+            return true
+        }
+
+        val number = value.doubleValue()
+
+        if (minimum != null && compare(value, number, minimum, minimumValue!!) < 0) {
+            return false
+        }
+
+        if (exclusiveMinimum != null && compare(value, number, exclusiveMinimum, exclusiveMinimumValue!!) <= 0) {
+            return false
+        }
+
+        if (maximum != null && compare(value, number, maximum, maximumValue!!) > 0) {
+            return false
+        }
+
+        if (exclusiveMaximum != null && compare(value, number, exclusiveMaximum, exclusiveMaximumValue!!) >= 0) {
+            return false
+        }
+
+        if (multipleOf != null && value.decimalValue().remainder(multipleOf).signum() != 0) {
+            return false
+        }
+
+        return range == null || !value.isIntegralNumber || (value.canConvertToLong() && value.longValue() in range)
+    }
+
+    /** Rounding to doubles keeps the order, so decimals are compared only if doubles are equal */
+    private fun compare(value: JsonNode, number: Double, limit: BigDecimal, limitValue: Double): Int =
+        when {
+            number < limitValue -> -1
+            number > limitValue -> 1
+            else -> value.decimalValue().compareTo(limit)
+        }
+
+}
+
+private class ArrayValidator(
+    private val items: SchemaValidator?,
+    private val minItems: Int,
+    private val maxItems: Int,
+    private val uniqueItems: Boolean
+) : SchemaValidator {
+
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!value.isArray) {
+            return
+        }
+
+        if (value.size() < minItems) {
+            errors.add(ValidationError(path.toString(), "minItems", "must contain at least $minItems items"))
+        }
+
+        if (value.size() > maxItems) {
+            errors.add(ValidationError(path.toString(), "maxItems", "must contain at most $maxItems items"))
+        }
+
+        if (uniqueItems && !hasUniqueItems(value)) {
+            errors.add(ValidationError(path.toString(), "uniqueItems", "must contain unique items"))
+        }
+
+        if (items != null) {
+            for (index in 0 until value.size()) {
+                items.validate(value.get(index), path.resolve(index), errors)
+            }
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean {
+        if (!value.isArray) {
+            return true
+        }
+
+        if (value.size() < minItems || value.size() > maxItems) {
+            return false
+        }
+
+        if (items != null) {
+            for (index in 0 until value.size()) {
+                if (!items.isValid(value.get(index))) {
+                    return false
+                }
+            }
+        }
+
+        return !uniqueItems || hasUniqueItems(value)
+    }
+
+    /** Compares items pairwise instead of hashing them, arrays with unique items are small and their items are rarely equal */
+    private fun hasUniqueItems(value: JsonNode): Boolean {
+        for (index in 1 until value.size()) {
+            val item = value.get(index)
+
+            for (previous in 0 until index) {
+                if (value.get(previous) == item) {
+                    return false
+                }
+            }
+        }
+
+        return true
+    }
+
+}
+
+private class ObjectValidator(
+    private val names: Array<String>,
+    private val validators: Array<SchemaValidator>,
+    private val required: Array<String>,
+    /** Validator of properties not listed in [names], null if they are allowed without restrictions */
+    private val additionalProperties: SchemaValidator?,
+    private val minProperties: Int,
+    private val maxProperties: Int
+) : SchemaValidator {
+
+    private val declaredNames = names.toHashSet()
+
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (!value.isObject) {
+            return
+        }
+
+        for (name in required) {
+            if (!value.has(name)) {
+                errors.add(ValidationError(path.toString(), "required", "must contain property '$name'"))
+            }
+        }
+
+        for (index in names.indices) {
+            val property = value.get(names[index]) ?: continue
+            validators[index].validate(property, path.resolve(names[index]), errors)
+        }
+
+        if (additionalProperties != null) {
+            value.fields().forEach { (name, property) ->
+                if (name !in declaredNames) {
+                    additionalProperties.validate(property, path.resolve(name), errors)
+                }
+            }
+        }
+
+        if (value.size() < minProperties) {
+            errors.add(ValidationError(path.toString(), "minProperties", "must contain at least $minProperties properties"))
+        }
+
+        if (value.size() > maxProperties) {
+            errors.add(ValidationError(path.toString(), "maxProperties", "must contain at most $maxProperties properties"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean {
+        if (!value.isObject) {
+            return true
+        }
+
+        if (value.size() < minProperties || value.size() > maxProperties) {
+            return false
+        }
+
+        for (name in required) {
+            if (!value.has(name)) {
+                return false
+            }
+        }
+
+        var declaredProperties = 0
+
+        for (index in names.indices) {
+            val property = value.get(names[index]) ?: continue
+            declaredProperties++
+
+            if (!validators[index].isValid(property)) {
+                return false
+            }
+        }
+
+        return when {
+            additionalProperties == null -> true
+            // `additionalProperties: false` is checked by counting declared properties, without iterating over all of them
+            additionalProperties === RejectingValidator -> declaredProperties == value.size()
+            else -> hasValidAdditionalProperties(value, additionalProperties)
+        }
+    }
+
+    private fun hasValidAdditionalProperties(value: JsonNode, additionalProperties: SchemaValidator): Boolean {
+        val fields = value.fields()
+
+        while (fields.hasNext()) {
+            val field = fields.next()
+
+            if (field.key !in declaredNames && !additionalProperties.isValid(field.value)) {
+                return false
+            }
+        }
+
+        return true
+    }
+
+}
+
+private class AllOfValidator(private val validators: Array<SchemaValidator>) : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        for (validator in validators) {
+            validator.validate(value, path, errors)
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean =
+        validators.all { it.isValid(value) }
+}
+
+private class AnyOfValidator(
+    private val validators: Array<SchemaValidator>,
+    /** Behaves as `oneOf` if set */
+    private val exactlyOne: Boolean
+) : SchemaValidator {
+
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        val matches = countMatches(value)
+
+        when {
+            matches == 0 -> errors.add(ValidationError(path.toString(), if (exactlyOne) "oneOf" else "anyOf", "must match ${if (exactlyOne) "exactly one" else "at least one"} of schemas"))
+            exactlyOne && matches > 1 -> errors.add(ValidationError(path.toString(), "oneOf", "must match exactly one of schemas, matches $matches"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean =
+        countMatches(value) == 1
+
+    private fun countMatches(value: JsonNode): Int =
+        when {
+            exactlyOne -> validators.count { it.isValid(value) }
+            validators.any { it.isValid(value) } -> 1
+            else -> 0
+        }
+
+}
+
+private class NotValidator(private val validator: SchemaValidator) : SchemaValidator {
+    override fun validate(value: JsonNode, path: ValidationPath, errors: MutableList<ValidationError>) {
+        if (validator.isValid(value)) {
+            errors.add(ValidationError(path.toString(), "not", "must not match schema"))
+        }
+    }
+
+    override fun isValid(value: JsonNode): Boolean =
+        !validator.isValid(value)
+}
+
+/** Checks of RFC 3339 dates and times, invalid values are common in requests, so they are rejected without parsing exceptions */
+private object DateTimeFormats {
+
+    private val DAYS_IN_MONTH = intArrayOf(31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31)
+
+    /** `full-date`, e.g. `2024-02-29` */
+    fun isDate(value: String): Boolean =
+        value.length == 10 && isFullDate(value)
+
+    /** `date-time`, e.g. `2024-02-29T12:30:00.5+01:00` */
+    fun isDateTime(value: String): Boolean {
+        if (value.length < 20 || !isFullDate(value) || (value[10] != 'T' && value[10] != 't')) {
+            return false
+        }
+
+        if (!isTime(value, 11, seconds = true)) {
+            return false
+        }
+
+        var index = 19
+
+        if (value[index] == '.') {
+            val fractionStart = ++index
+
+            while (index < value.length && value[index] in '0'..'9') {
+                index++
+            }
+
+            if (index == fractionStart || index == value.length) {
+                return false
+            }
+        }
+
+        return when (value[index]) {
+            'Z', 'z' -> index + 1 == value.length
+            '+', '-' -> index + 6 == value.length && isTime(value, index + 1, seconds = false)
+            else -> false
+        }
+    }
+
+    private fun isFullDate(value: String): Boolean {
+        if (value[4] != '-' || value[7] != '-') {
+            return false
+        }
+
+        val year = number(value, 0, 4)
+        val month = number(value, 5, 2)
+        val day = number(value, 8, 2)
+
+        if (year < 0 || month !in 1..12 || day < 1 || day > DAYS_IN_MONTH[month - 1]) {
+            return false
+        }
+
+        return month != 2 || day != 29 || (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))
+    }
+
+    /** `hh:mm` or `hh:mm:ss` starting at the given index */
+    private fun isTime(value: String, start: Int, seconds: Boolean): Boolean =
+        value[start + 2] == ':' &&
+            number(value, start, 2) in 0..23 &&
+            number(value, start + 3, 2) in 0..59 &&
+            (!seconds || (value[start + 5] == ':' && number(value, start + 6, 2) in 0..59))
+
+    /** Parses given number of digits, or returns -1 if any of them is not a digit */
+    private fun number(value: String, start: Int, length: Int): Int {
+        var result = 0
+
+        for (index in start until start + length) {
+            val digit = value[index] - '0'
+
+            if (digit !in 0..9) {
+                return -1
+            }
+
+            result = result * 10 + digit
+        }
+
+        return result
+    }
+
+}
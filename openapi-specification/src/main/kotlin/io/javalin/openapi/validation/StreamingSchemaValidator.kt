@@ -0,0 +1,291 @@
+package io.javalin.openapi.validation
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.core.SerializableString
+import com.fasterxml.jackson.core.exc.StreamReadException
+import com.fasterxml.jackson.core.util.JsonParserDelegate
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.node.ArrayNode
+import com.fasterxml.jackson.databind.node.ContainerNode
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+import com.fasterxml.jackson.databind.node.ObjectNode
+
+/** Thrown by parsers created by [StreamingSchemaValidator] for the first invalid value */
+class SchemaValidationException(
+    val error: ValidationError,
+    parser: JsonParser?
+) : StreamReadException(parser, "Invalid value at '${error.pointer}': ${error.message}")
+
+/**
+ * Validator compiled once from a schema by [SchemaValidatorCompiler.compileStreaming], checks values while they are read from [JsonParser].
+ * Sizes of arrays and objects and required properties are checked on the fly, so invalid documents are rejected
+ * as soon as the first violation is read, without holding the document in memory.
+ */
+class StreamingSchemaValidator internal constructor(private val schema: StreamingSchema) {
+
+    /**
+     * Wraps parser that has not been advanced yet, so tokens are validated as they're read, e.g. by `ObjectMapper.readValue`.
+     * [SchemaValidationException] is thrown by the token that makes the value invalid.
+     */
+    fun parser(parser: JsonParser): JsonParser =
+        ValidatingJsonParser(parser, StreamingValidation(schema))
+
+    /** Reads the next value of the given parser, throws [SchemaValidationException] for the first violation */
+    fun validate(parser: JsonParser) {
+        val validatingParser = parser(parser)
+        validatingParser.nextToken()
+        validatingParser.skipChildren()
+    }
+
+}
+
+/** Schema compiled for streaming validation, initialized by [SchemaValidatorCompiler] after registration, so it can be recursive */
+internal class StreamingSchema {
+
+    companion object {
+        val ACCEPT_ALL = StreamingSchema()
+    }
+
+    /** Validates scalars and buffered containers */
+    var validator: SchemaValidator = SchemaValidator { _, _, _ -> }
+    var validatesScalars = false
+    /** Containers are read into a tree and checked by [validator] */
+    var buffered = false
+    var typeName: String? = null
+    var objectAllowed = true
+    var arrayAllowed = true
+
+    // children of schemas without any keywords of containers are not restricted either
+    var properties: Map<String, StreamingSchema> = emptyMap()
+    var required: Array<String> = emptyArray()
+    var additionalProperties: StreamingSchema = this
+    var additionalPropertiesForbidden = false
+    var minProperties = 0
+    var maxProperties = Int.MAX_VALUE
+
+    var items: StreamingSchema = this
+    var minItems = 0
+    var maxItems = Int.MAX_VALUE
+
+}
+
+/** State of validation of a single document */
+private class StreamingValidation(private val schema: StreamingSchema) {
+
+    private sealed class Frame(val schema: StreamingSchema, val path: ValidationPath)
+
+    private class ObjectFrame(schema: StreamingSchema, path: ValidationPath) : Frame(schema, path) {
+        val requiredFound = BooleanArray(schema.required.size)
+        var size = 0
+        var name: String? = null
+        var child: StreamingSchema = schema
+    }
+
+    private class ArrayFrame(schema: StreamingSchema, path: ValidationPath) : Frame(schema, path) {
+        var size = 0
+    }
+
+    /** Container read into a tree, because its schema requires the whole value */
+    private class BufferFrame(schema: StreamingSchema, path: ValidationPath, val root: ContainerNode<*>) : Frame(schema, path) {
+        val containers = arrayListOf(root)
+        var name: String? = null
+    }
+
+    private val frames = ArrayList<Frame>()
+    private val errors = ArrayList<ValidationError>(1)
+
+    fun accept(token: JsonToken, parser: JsonParser) {
+        when (val frame = frames.lastOrNull()) {
+            null -> begin(schema, ValidationPath.ROOT, token, parser)
+            is ObjectFrame -> when (token) {
+                JsonToken.FIELD_NAME -> property(frame, parser.currentName(), parser)
+                JsonToken.END_OBJECT -> end(frame, parser)
+                else -> begin(frame.child, frame.path.resolve(frame.name!!), token, parser)
+            }
+            is ArrayFrame -> when (token) {
+                JsonToken.END_ARRAY -> end(frame, parser)
+                else -> {
+                    if (++frame.size > frame.schema.maxItems) {
+                        fail(frame.path, "maxItems", "must contain at most ${frame.schema.maxItems} items", parser)
+                    }
+                    begin(frame.schema.items, frame.path.resolve(frame.size - 1), token, parser)
+                }
+            }
+            is BufferFrame -> buffer(frame, token, parser)
+        }
+    }
+
+    private fun begin(schema: StreamingSchema, path: ValidationPath, token: JsonToken, parser: JsonParser) {
+        when (token) {
+            JsonToken.START_OBJECT -> when {
+                schema.buffered -> frames.add(BufferFrame(schema, path, JsonNodeFactory.instance.objectNode()))
+                !schema.objectAllowed -> fail(path, "type", "must be of type ${schema.typeName}", parser)
+                else -> frames.add(ObjectFrame(schema, path))
+            }
+            JsonToken.START_ARRAY -> when {
+                schema.buffered -> frames.add(BufferFrame(schema, path, JsonNodeFactory.instance.arrayNode()))
+                !schema.arrayAllowed -> fail(path, "type", "must be of type ${schema.typeName}", parser)
+                else -> frames.add(ArrayFrame(schema, path))
+            }
+            else -> if (schema.validatesScalars) check(schema.validator, readScalar(token, parser), path, parser)
+        }
+    }
+
+    private fun property(frame: ObjectFrame, name: String, parser: JsonParser) {
+        val schema = frame.schema
+
+        if (++frame.size > schema.maxProperties) {
+            fail(frame.path, "maxProperties", "must contain at most ${schema.maxProperties} properties", parser)
+        }
+
+        val property = schema.properties[name]
+
+        if (property == null && schema.additionalPropertiesForbidden) {
+            fail(frame.path.resolve(name), "additionalProperties", "is not allowed", parser)
+        }
+
+        for (index in schema.required.indices) {
+            if (schema.required[index] == name) {
+                frame.requiredFound[index] = true
+            }
+        }
+
+        frame.name = name
+        frame.child = property ?: schema.additionalProperties
+    }
+
+    private fun end(frame: ObjectFrame, parser: JsonParser) {
+        frames.removeAt(frames.lastIndex)
+        val schema = frame.schema
+
+        for (index in schema.required.indices) {
+            if (!frame.requiredFound[index]) {
+                fail(frame.path, "required", "must contain property '${schema.required[index]}'", parser)
+            }
+        }
+
+        if (frame.size < schema.minProperties) {
+            fail(frame.path, "minProperties", "must contain at least ${schema.minProperties} properties", parser)
+        }
+    }
+
+    private fun end(frame: ArrayFrame, parser: JsonParser) {
+        frames.removeAt(frames.lastIndex)
+
+        if (frame.size < frame.schema.minItems) {
+            fail(frame.path, "minItems", "must contain at least ${frame.schema.minItems} items", parser)
+        }
+    }
+
+    private fun buffer(frame: BufferFrame, token: JsonToken, parser: JsonParser) {
+        val value: JsonNode = when (token) {
+            JsonToken.FIELD_NAME -> {
+                frame.name = parser.currentName()
+                return
+            }
+            JsonToken.END_OBJECT, JsonToken.END_ARRAY -> {
+                frame.containers.removeAt(frame.containers.lastIndex)
+
+                if (frame.containers.isEmpty()) {
+                    frames.removeAt(frames.lastIndex)
+                    check(frame.schema.validator, frame.root, frame.path, parser)
+                }
+                return
+            }
+            JsonToken.START_OBJECT -> JsonNodeFactory.instance.objectNode()
+            JsonToken.START_ARRAY -> JsonNodeFactory.instance.arrayNode()
+            else -> readScalar(token, parser)
+        }
+
+        when (val parent = frame.containers.last()) {
+            is ObjectNode -> parent.set<JsonNode>(frame.name, value)
+            is ArrayNode -> parent.add(value)
+        }
+
+        if (value is ContainerNode<*>) {
+            frame.containers.add(value)
+        }
+    }
+
+    private fun readScalar(token: JsonToken, parser: JsonParser): JsonNode =
+        when (token) {
+            JsonToken.VALUE_STRING -> JsonNodeFactory.instance.textNode(parser.text)
+            JsonToken.VALUE_NUMBER_INT -> when (parser.numberType) {
+                JsonParser.NumberType.INT -> JsonNodeFactory.instance.numberNode(parser.intValue)
+                JsonParser.NumberType.LONG -> JsonNodeFactory.instance.numberNode(parser.longValue)
+                else -> JsonNodeFactory.instance.numberNode(parser.bigIntegerValue)
+            }
+            JsonToken.VALUE_NUMBER_FLOAT -> JsonNodeFactory.instance.numberNode(parser.decimalValue)
+            JsonToken.VALUE_TRUE -> JsonNodeFactory.instance.booleanNode(true)
+            JsonToken.VALUE_FALSE -> JsonNodeFactory.instance.booleanNode(false)
+            JsonToken.VALUE_EMBEDDED_OBJECT -> JsonNodeFactory.instance.pojoNode(parser.embeddedObject)
+            else -> JsonNodeFactory.instance.nullNode()
+        }
+
+    private fun check(validator: SchemaValidator, value: JsonNode, path: ValidationPath, parser: JsonParser) {
+        validator.validate(value, path, errors)
+
+        if (errors.isNotEmpty()) {
+            val error = errors[0]
+            errors.clear()
+            throw SchemaValidationException(error, parser)
+        }
+    }
+
+    private fun fail(path: ValidationPath, keyword: String, message: String, parser: JsonParser): Nothing =
+        throw SchemaValidationException(ValidationError(path.toString(), keyword, message), parser)
+
+}
+
+/** Feeds every token read by the consumer to [StreamingValidation], shortcuts of [JsonParser] are implemented with [nextToken] */
+private class ValidatingJsonParser(parser: JsonParser, private val validation: StreamingValidation) : JsonParserDelegate(parser) {
+
+    override fun nextToken(): JsonToken? =
+        delegate.nextToken()?.also { validation.accept(it, delegate) }
+
+    override fun nextValue(): JsonToken? =
+        nextToken()?.let { if (it == JsonToken.FIELD_NAME) nextToken() else it }
+
+    override fun nextFieldName(): String? =
+        if (nextToken() == JsonToken.FIELD_NAME) currentName() else null
+
+    override fun nextFieldName(name: SerializableString): Boolean =
+        nextToken() == JsonToken.FIELD_NAME && name.value == currentName()
+
+    override fun nextTextValue(): String? =
+        if (nextToken() == JsonToken.VALUE_STRING) text else null
+
+    override fun nextIntValue(defaultValue: Int): Int =
+        if (nextToken() == JsonToken.VALUE_NUMBER_INT) intValue else defaultValue
+
+    override fun nextLongValue(defaultValue: Long): Long =
+        if (nextToken() == JsonToken.VALUE_NUMBER_INT) longValue else defaultValue
+
+    override fun nextBooleanValue(): Boolean? =
+        when (nextToken()) {
+            JsonToken.VALUE_TRUE -> true
+            JsonToken.VALUE_FALSE -> false
+            else -> null
+        }
+
+    override fun skipChildren(): JsonParser {
+        if (currentToken() != JsonToken.START_OBJECT && currentToken() != JsonToken.START_ARRAY) {
+            return this
+        }
+
+        var depth = 1
+
+        while (depth > 0) {
+            val token = nextToken() ?: break
+
+            when {
+                token.isStructStart -> depth++
+                token.isStructEnd -> depth--
+            }
+        }
+
+        return this
+    }
+
+}